@@ -15,7 +15,9 @@
  */
 package com.google.classpath;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
 
 public interface ClassPath {
 
@@ -29,5 +31,38 @@ public interface ClassPath {
 
     InputStream getResourceAsStream(String resource);
 
+    /**
+     * @return the content of {@code resource}, or null if there is no such resource. Unlike
+     * with {@link #getResourceAsStream(String)} there is nothing to close and the content is
+     * copied once.
+     * <p>
+     * By default the stream of {@link #getResourceAsStream(String)} is read, class paths which
+     * can copy the content directly override this.
+     */
+    default byte[] getResourceBytes(String resource) {
+        InputStream in = getResourceAsStream(resource);
+        if (in == null) {
+            return null;
+        }
+        try {
+            return ResourceBuffers.readFully(in, -1);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     String[] findResources(String rootPackageName, ResourceFilter resourceFilter);
+
+    /**
+     * Like {@link #findResources(String, ResourceFilter)}, but the packages are listed while
+     * the iterator is consumed, so the first resources are returned before the whole tree is
+     * walked. The resources are in the same sorted order.
+     * <p>
+     * By default the packages are walked with {@link #listPackages(String)} and
+     * {@link #listResources(String)}.
+     */
+    default Iterator<String> iterateResources(String rootPackageName,
+            ResourceFilter resourceFilter) {
+        return new ResourceFinder(this).iterateResources(rootPackageName, resourceFilter);
+    }
 }
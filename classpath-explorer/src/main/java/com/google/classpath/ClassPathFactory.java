@@ -19,11 +19,45 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
 
 public class ClassPathFactory {
 
     public static final String JAVA_CLASS_PATH = "java.class.path";
 
+    private static final Logger logger =
+            Logger.getLogger(ClassPathFactory.class.getCanonicalName());
+
+    private final ClassPathIndexCache indexCache;
+    private final int parallelism;
+
+    public ClassPathFactory() {
+        this(null);
+    }
+
+    /**
+     * @param indexCache where the indexes of jars and directories are kept between runs, or null
+     * to read every jar and walk every directory each time.
+     */
+    public ClassPathFactory(ClassPathIndexCache indexCache) {
+        this(indexCache, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism the number of paths which are opened and indexed at the same time.
+     */
+    public ClassPathFactory(ClassPathIndexCache indexCache, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.indexCache = indexCache;
+        this.parallelism = parallelism;
+    }
+
     public String getJVMClasspath() {
         return System.getProperty(JAVA_CLASS_PATH);
     }
@@ -40,22 +74,94 @@ public class ClassPathFactory {
         return createFromPaths(parseClasspath(classpath));
     }
 
+    /**
+     * Besides jars and directories, a path can be {@link JRTClassPath#JDK} for the classes of
+     * the running JDK, or the home directory of a Java 9+ JDK for the classes of that JDK. The
+     * classes and jars nested in a fat jar are used as well, see
+     * {@link JARClassPath#loadNestedEntries()}.
+     * <p>
+     * The paths are opened concurrently, but keep their order in the returned class path. A path
+     * which can not be read is logged and left out, the others are still used.
+     */
     public ClassPath createFromPaths(String... paths) {
         List<ClassPath> classPaths = new ArrayList<>();
-        for (String path : paths) {
-            File file = new File(path);
-            if (file.isFile()) {
-                try {
-                    classPaths.add(new JARClassPath(file).loadEntries());
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
+        int threads = Math.min(parallelism, paths.length);
+        if (threads <= 1) {
+            for (String path : paths) {
+                add(classPaths, path);
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "classpath-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<List<ClassPath>>> futures = new ArrayList<>();
+                for (String path : paths) {
+                    futures.add(executor.submit(() -> create(path)));
                 }
-            } else if (file.isDirectory()) {
-                classPaths.add(new DirectoryClassPath(file));
+                for (int i = 0; i < paths.length; i++) {
+                    add(classPaths, paths[i], futures.get(i));
+                }
+            } finally {
+                executor.shutdownNow();
             }
         }
         ClassPath[] array = new ClassPath[classPaths.size()];
         array = classPaths.toArray(array);
         return new CompositeClassPath(array);
     }
+
+    private void add(List<ClassPath> classPaths, String path) {
+        try {
+            classPaths.addAll(create(path));
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Ignoring class path entry " + path + ": " + e);
+        }
+    }
+
+    private void add(List<ClassPath> classPaths, String path,
+            Future<List<ClassPath>> future) {
+        try {
+            classPaths.addAll(future.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            logger.warning("Ignoring class path entry " + path + ": " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the class paths of {@code path}, several for a jar with nested jars, none if it
+     * is not a class path entry.
+     */
+    private List<ClassPath> create(String path) throws IOException {
+        List<ClassPath> classPaths = new ArrayList<>();
+        File file = new File(path);
+        if (JRTClassPath.JDK.equals(path) && !file.exists()) {
+            addJDK(classPaths, new JRTClassPath());
+        } else if (file.isDirectory() && JRTClassPath.isJavaHome(file)) {
+            addJDK(classPaths, new JRTClassPath(file));
+        } else if (file.isFile()) {
+            JARClassPath jar = new JARClassPath(file);
+            classPaths.add(jar.loadMappedEntries(indexCache));
+            classPaths.addAll(jar.loadNestedEntries());
+        } else if (file.isDirectory()) {
+            classPaths.add(new DirectoryClassPath(file).loadEntries(indexCache));
+        }
+        return classPaths;
+    }
+
+    private void addJDK(List<ClassPath> classPaths, JRTClassPath jdk) {
+        try {
+            classPaths.add(jdk.loadEntries());
+        } catch (IOException e) {
+            // Not a Java 9+ runtime image, ignored like any other illegal path.
+        }
+    }
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+/**
+ * Keeps the index of each jar and directory in a directory so that later runs do not have to
+ * read the central directory of jars, or walk the directory trees, which did not change.
+ * <p>
+ * An index is keyed by the path of the jar or directory. A jar's index is only used while the
+ * size and modification time of the jar are the ones it was built for, and its central
+ * directory has the same checksum: a jar rewritten within one tick of a coarse modification
+ * time is not mistaken for the old one. A directory's index is
+ * only used while each directory in the tree has the modification time it had when it was
+ * walked, which changes whenever an entry is added to it, removed or renamed.
+ * <p>
+ * The sorted index is stored as it is kept in memory, so loading it is copying a few arrays
+ * out of the mapped file. Indexes which can not be read are ignored and the jar or directory
+ * is read as if there was no cache.
+ */
+public class ClassPathIndexCache {
+
+    private static final int MAGIC = 0x43504943; // "CPIC"
+    private static final int FORMAT_VERSION = 4;
+    private static final int HEADER_SIZE = 4 + 4 + 4;
+    private static final byte JAR = 1;
+    private static final byte DIRECTORY = 2;
+    /**
+     * Modification times are this coarse on some file systems, a directory changed this
+     * shortly before it was walked may change again without its time changing.
+     */
+    private static final long TIME_GRANULARITY = 2000;
+
+    private final File directory;
+
+    public ClassPathIndexCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the archive mapped with its cached index, or {@code null} if there is no usable
+     * index for it.
+     */
+    MappedZipFile load(File jar) {
+        ByteBuffer index = read(jar, JAR);
+        if (index == null) {
+            return null;
+        }
+        try {
+            if (index.getLong() != jar.length() || index.getLong() != jar.lastModified()) {
+                return null;
+            }
+            int centralDirectory = index.getInt();
+            long checksum = index.getLong();
+            return MappedZipFile.open(jar, ResourceIndex.read(index), centralDirectory, checksum);
+        } catch (IOException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index of {@code zip} to the cache. Failing to write the cache is not an error,
+     * the jar will just be read again next time.
+     */
+    void store(File jar, MappedZipFile zip) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(payload);
+            data.writeLong(jar.length());
+            data.writeLong(jar.lastModified());
+            data.writeInt(zip.getCentralDirectory());
+            data.writeLong(zip.checksumCentralDirectory());
+            zip.getIndex().writeTo(data);
+            write(jar, JAR, payload);
+        } catch (IOException e) {
+            // Not cached this time.
+        }
+    }
+
+    /**
+     * @return the cached index of the directory tree {@code root}, or {@code null} if there is
+     * no usable index for it.
+     */
+    ResourceIndex loadDirectory(File root) {
+        ByteBuffer index = read(root, DIRECTORY);
+        if (index == null) {
+            return null;
+        }
+        try {
+            int count = index.getInt();
+            for (int i = 0; i < count; i++) {
+                File directory = new File(root, readString(index));
+                if (Files.getLastModifiedTime(directory.toPath()).toMillis() != index.getLong()) {
+                    return null;
+                }
+            }
+            return ResourceIndex.read(index);
+        } catch (IOException | BufferUnderflowException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index of the directory tree {@code root} to the cache, unless a directory
+     * changed too shortly before it was walked to tell later changes by its time.
+     *
+     * @param walked when the walk started.
+     * @param directories the modification time of each directory in the tree, by its path
+     *     relative to {@code root}, "" for {@code root} itself.
+     */
+    void storeDirectory(File root, long walked, Map<String, Long> directories,
+            ResourceIndex index) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(payload);
+            data.writeInt(directories.size());
+            for (Map.Entry<String, Long> directory : directories.entrySet()) {
+                if (directory.getValue() > walked - TIME_GRANULARITY) {
+                    return;
+                }
+                writeString(data, directory.getKey());
+                data.writeLong(directory.getValue());
+            }
+            index.writeTo(data);
+            write(root, DIRECTORY, payload);
+        } catch (IOException e) {
+            // Not cached this time.
+        }
+    }
+
+    /**
+     * @return the index of {@code path}, positioned after the header, or {@code null} if
+     * there is none of that kind.
+     */
+    private ByteBuffer read(File path, byte kind) {
+        File file = fileFor(path);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            ByteBuffer index = map(file);
+            if (index.getInt() != MAGIC || index.getInt() != FORMAT_VERSION
+                    || index.getInt() != index.remaining()
+                    || index.get() != kind
+                    || !path.getAbsolutePath().equals(readString(index))) {
+                return null;
+            }
+            return index;
+        } catch (IOException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private void write(File path, byte kind, ByteArrayOutputStream payload) throws IOException {
+        File file = fileFor(path);
+        File temp = null;
+        try {
+            directory.mkdirs();
+            temp = File.createTempFile("index", ".tmp", directory);
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+                byte[] header = path.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+                if (header.length > 0xFFFF) {
+                    throw new IOException("Path too long to index: " + path);
+                }
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(1 + 2 + header.length + payload.size());
+                out.writeByte(kind);
+                out.writeShort(header.length);
+                out.write(header);
+                payload.writeTo(out);
+            }
+            // Written under a temporary name so that concurrent builds never see half an index.
+            file.delete();
+            if (temp.renameTo(file)) {
+                temp = null;
+            }
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not an index: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("Name too long to index: " + string);
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private File fileFor(File jar) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] key = digest.digest(jar.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : key) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(directory, hex + ".index");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -16,14 +16,40 @@
 package com.google.classpath;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import static java.util.Arrays.asList;
 
+/**
+ * A class path made of other class paths, the first one which has a resource wins.
+ * <p>
+ * The packages of jars are indexed the first time a resource is looked up, so finding the
+ * jar of a resource only asks the jars which have resources in its package, in order. Other
+ * class paths, such as directories, are not indexed and are asked in order for the resources
+ * which could be theirs.
+ */
 public class CompositeClassPath implements ClassPath {
 
+    private static class Index {
+
+        /**
+         * The positions of the indexed class paths which have resources in a package, in
+         * order, by package name ending with '/'.
+         */
+        private final Map<String, int[]> owners = new HashMap<>();
+        /** The positions of the class paths which are not indexed, in order. */
+        private final List<Integer> unindexed = new ArrayList<>();
+    }
+
     private final ClassPath[] classPaths;
+    private volatile Index index;
 
     public CompositeClassPath(ClassPath... classPaths) {
         this.classPaths = classPaths;
@@ -31,12 +57,17 @@ public class CompositeClassPath implements ClassPath {
 
     @Override
     public boolean isResource(String resource) {
-        for (ClassPath classPath : classPaths) {
-            if (classPath.isResource(resource)) {
+        Index index = getIndex();
+        int owner = getOwner(index, resource);
+        for (int position : index.unindexed) {
+            if (position > owner) {
+                break;
+            }
+            if (classPaths[position].isResource(resource)) {
                 return true;
             }
         }
-        return false;
+        return owner < classPaths.length;
     }
 
     @Override
@@ -69,13 +100,34 @@ public class CompositeClassPath implements ClassPath {
 
     @Override
     public InputStream getResourceAsStream(String resource) {
-        for (ClassPath classPath : classPaths) {
-            InputStream is = classPath.getResourceAsStream(resource);
+        Index index = getIndex();
+        int owner = getOwner(index, resource);
+        for (int position : index.unindexed) {
+            if (position > owner) {
+                break;
+            }
+            InputStream is = classPaths[position].getResourceAsStream(resource);
             if (is != null) {
                 return is;
             }
         }
-        return null;
+        return owner < classPaths.length ? classPaths[owner].getResourceAsStream(resource) : null;
+    }
+
+    @Override
+    public byte[] getResourceBytes(String resource) {
+        Index index = getIndex();
+        int owner = getOwner(index, resource);
+        for (int position : index.unindexed) {
+            if (position > owner) {
+                break;
+            }
+            byte[] content = classPaths[position].getResourceBytes(resource);
+            if (content != null) {
+                return content;
+            }
+        }
+        return owner < classPaths.length ? classPaths[owner].getResourceBytes(resource) : null;
     }
 
     @Override
@@ -88,4 +140,65 @@ public class CompositeClassPath implements ClassPath {
         }
         return resources.toArray(new String[0]);
     }
+
+    @Override
+    public Iterator<String> iterateResources(String rootPackageName,
+            ResourceFilter resourceFilter) {
+        List<Iterator<String>> iterators = new ArrayList<>();
+        for (ClassPath classPath : classPaths) {
+            iterators.add(classPath.iterateResources(rootPackageName, resourceFilter));
+        }
+        return new MergedResourceIterator(iterators);
+    }
+
+    /**
+     * @return the position of the first indexed class path with {@code resource}, or the number
+     * of class paths if none has it.
+     */
+    private int getOwner(Index index, String resource) {
+        resource = JARClassPath.stripLeadingSlashes(resource);
+        int[] owners = index.owners.get(resource.substring(0, resource.lastIndexOf('/') + 1));
+        if (owners != null) {
+            for (int owner : owners) {
+                if (classPaths[owner].isResource(resource)) {
+                    return owner;
+                }
+            }
+        }
+        return classPaths.length;
+    }
+
+    private Index getIndex() {
+        Index result = index;
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+                if (result == null) {
+                    result = buildIndex();
+                    index = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Index buildIndex() {
+        Index result = new Index();
+        for (int i = 0; i < classPaths.length; i++) {
+            if (classPaths[i] instanceof JARClassPath) {
+                int position = i;
+                ((JARClassPath) classPaths[i]).forEachPackage(pkg -> result.owners.merge(pkg,
+                        new int[] {position}, CompositeClassPath::append));
+            } else {
+                result.unindexed.add(i);
+            }
+        }
+        return result;
+    }
+
+    private static int[] append(int[] positions, int[] position) {
+        int[] appended = Arrays.copyOf(positions, positions.length + 1);
+        appended[positions.length] = position[0];
+        return appended;
+    }
 }
@@ -15,15 +15,43 @@
  */
 package com.google.classpath;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-public class DirectoryClassPath implements ClassPath {
+/**
+ * The resources in a directory tree. By default every call goes to the file system. After
+ * {@link #loadEntries()} the tree is walked once and the packages and resources are kept in
+ * memory, in a {@link ResourceIndex} like the entries of a jar, {@link #watch()} keeps that
+ * index up to date in long running processes.
+ */
+public class DirectoryClassPath implements ClassPath, Closeable {
 
     private final File rootDirectory;
+    private volatile boolean indexed;
+    private volatile boolean stale;
+    /** The directories, ending with '/', and the files of the tree, relative to its root. */
+    private volatile ResourceIndex index;
+    private WatchService watchService;
 
     public static class DirectoryFilter implements FileFilter {
 
@@ -45,28 +73,103 @@ public class DirectoryClassPath implements ClassPath {
         this.rootDirectory = rootDirectory;
     }
 
+    /**
+     * Walks the directory tree once and answers from the resulting index from then on,
+     * resources are read with {@link Files#readAllBytes(Path)}.
+     */
+    public ClassPath loadEntries() throws IOException {
+        return loadEntries(null);
+    }
+
+    /**
+     * Like {@link #loadEntries()}, but the index is taken from {@code indexCache} if no
+     * directory in the tree changed since it was cached.
+     */
+    public ClassPath loadEntries(ClassPathIndexCache indexCache) throws IOException {
+        ResourceIndex cached = indexCache == null ? null : indexCache.loadDirectory(rootDirectory);
+        index = cached == null ? walk(indexCache) : cached;
+        indexed = true;
+        return this;
+    }
+
+    /**
+     * Keeps the index of {@link #loadEntries()} up to date: a change anywhere in the tree makes
+     * the next lookup walk the tree again. Stopped by {@link #close()}.
+     */
+    public DirectoryClassPath watch() throws IOException {
+        synchronized (this) {
+            if (watchService != null) {
+                return this;
+            }
+            watchService = rootDirectory.toPath().getFileSystem().newWatchService();
+            indexed = true;
+            stale = true;
+        }
+        final WatchService service = watchService;
+        Thread watcher = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = service.take();
+                    key.pollEvents();
+                    key.reset();
+                    stale = true;
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Not watching any more.
+            }
+        }, "classpath-watcher " + rootDirectory);
+        watcher.setDaemon(true);
+        watcher.start();
+        return this;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
     @Override
     public boolean isResource(String resource) {
+        if (indexed) {
+            return !resource.endsWith("/")
+                    && getIndex().indexOf(JARClassPath.normalize(resource)) >= 0;
+        }
         return !resource.endsWith("/") && getFile(resource).isFile();
     }
 
     @Override
     public boolean isPackage(String packageName) {
+        if (indexed) {
+            return getIndex().isPackage(JARClassPath.normalize(packageName));
+        }
         return getFile(packageName).isDirectory();
     }
 
     @Override
     public String[] listPackages(String packageName) {
+        if (indexed) {
+            return getIndex().listPackages(JARClassPath.normalize(packageName));
+        }
         return listNames(packageName, new DirectoryFilter());
     }
 
     @Override
     public String[] listResources(String packageName) {
+        if (indexed) {
+            return getIndex().listResources(JARClassPath.normalize(packageName));
+        }
         return listNames(packageName, new FileFileFilter());
     }
 
     @Override
     public InputStream getResourceAsStream(String resource) {
+        if (indexed) {
+            byte[] content = getResourceBytes(resource);
+            return content == null ? null : new ByteArrayInputStream(content);
+        }
         if (isResource(resource)) {
             try {
                 return new FileInputStream(getFile(resource));
@@ -78,11 +181,114 @@ public class DirectoryClassPath implements ClassPath {
         }
     }
 
+    @Override
+    public byte[] getResourceBytes(String resource) {
+        if (!isResource(resource)) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(getFile(resource).toPath());
+        } catch (NoSuchFileException e) {
+            // Deleted since it was looked up.
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public String[] findResources(String rootPackageName, ResourceFilter resourceFilter) {
         return new ResourceFinder(this).findResources(rootPackageName, resourceFilter);
     }
 
+    private ResourceIndex getIndex() {
+        if (stale) {
+            synchronized (this) {
+                if (stale) {
+                    // Cleared first, so changes made during the walk are not lost.
+                    stale = false;
+                    try {
+                        index = walk(null);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param indexCache where to store the index of the walked tree, or {@code null}.
+     */
+    private ResourceIndex walk(ClassPathIndexCache indexCache) throws IOException {
+        final Path rootPath = rootDirectory.toPath();
+        final WatchService service = watchService;
+        final ResourceIndex.Builder entries = new ResourceIndex.Builder();
+        final Map<String, Long> directories = new LinkedHashMap<>();
+        long walked = System.currentTimeMillis();
+        Files.walkFileTree(rootPath, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                            throws IOException {
+                        if (!dir.equals(rootPath) && ".git".equals(dir.getFileName().toString())) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        if (service != null) {
+                            try {
+                                dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                                        StandardWatchEventKinds.ENTRY_DELETE);
+                            } catch (ClosedWatchServiceException e) {
+                                // Closed while walking, the index just stops being updated.
+                            }
+                        }
+                        String name = name(rootPath.relativize(dir));
+                        directories.put(name, attrs.lastModifiedTime().toMillis());
+                        if (!name.isEmpty()) {
+                            entries.add(name + "/", 0);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile()) {
+                            entries.add(name(rootPath.relativize(file)), 0);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        // Unreadable, missing or a link cycle: left out like with listFiles().
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+        ResourceIndex newIndex = entries.build();
+        if (indexCache != null) {
+            indexCache.storeDirectory(rootDirectory, walked, directories, newIndex);
+        }
+        return newIndex;
+    }
+
+    /**
+     * @return the relative path with '/' between its names, "" for the root itself.
+     */
+    private static String name(Path path) {
+        StringBuilder name = new StringBuilder();
+        for (Path part : path) {
+            if (part.toString().isEmpty()) {
+                continue;
+            }
+            if (name.length() > 0) {
+                name.append('/');
+            }
+            name.append(part);
+        }
+        return name.toString();
+    }
+
     private File getFile(String path) {
         return new File(rootDirectory, path);
     }
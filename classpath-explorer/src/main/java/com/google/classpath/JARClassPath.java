@@ -15,15 +15,14 @@
  */
 package com.google.classpath;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.Map;
-import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Logger;
@@ -32,21 +31,30 @@ import java.util.zip.ZipException;
 
 public class JARClassPath implements ClassPath {
 
-    private static class Package {
-
-        private final Map<String, Package> packages = new TreeMap<>();
-        private final SortedSet<String> resources = new TreeSet<>();
-    }
+    /** Where fat jars (Spring Boot, wars) keep their own classes. */
+    private static final String[] NESTED_CLASSES = {"BOOT-INF/classes/", "WEB-INF/classes/"};
+    /**
+     * Where fat jars keep the jars they depend on. Jars anywhere else, such as test fixtures
+     * at the root of a jar, are resources and not class path entries.
+     */
+    private static final String[] NESTED_JARS = {"BOOT-INF/lib/", "WEB-INF/lib/"};
 
     private final File file;
-    private final Package root = new Package();
+    private ResourceIndex index;
     private JarFile jarFile;
+    private MappedZipFile mappedFile;
     private static final Logger logger = Logger.getLogger(JARClassPath.class.getCanonicalName());
 
     public JARClassPath(File jarFile) {
         this.file = jarFile;
     }
 
+    private JARClassPath(File file, MappedZipFile mappedFile) {
+        this.file = file;
+        this.mappedFile = mappedFile;
+        this.index = mappedFile.getIndex();
+    }
+
     public ClassPath loadEntries() throws IOException {
         try {
             jarFile = new JarFile(file);
@@ -54,57 +62,131 @@ public class JARClassPath implements ClassPath {
             logger.warning("Failed to read Jar file " + file.getAbsolutePath());
             throw e;
         }
+        ResourceIndex.Builder entries = new ResourceIndex.Builder();
         Enumeration<JarEntry> enumeration = jarFile.entries();
         while (enumeration.hasMoreElements()) {
-            JarEntry entry = enumeration.nextElement();
-            String path = entry.getName();
-            if (entry.isDirectory()) {
-                addPackage(path);
-            } else {
-                addResource(path);
-            }
+            entries.add(enumeration.nextElement().getName(), 0);
         }
+        index = entries.build();
         return this;
     }
 
+    /**
+     * Memory maps the archive and reads its central directory into a sorted index instead of
+     * a package tree, resources are inflated straight into byte arrays. Falls back to
+     * {@link #loadEntries()} for archives which can not be mapped, such as zip64 ones.
+     */
+    public ClassPath loadMappedEntries() throws IOException {
+        return loadMappedEntries(null);
+    }
+
+    /**
+     * Like {@link #loadMappedEntries()}, but the index is taken from {@code indexCache} if the
+     * jar did not change since it was cached.
+     */
+    public ClassPath loadMappedEntries(ClassPathIndexCache indexCache) throws IOException {
+        if (indexCache != null) {
+            mappedFile = indexCache.load(file);
+            if (mappedFile != null) {
+                index = mappedFile.getIndex();
+                return this;
+            }
+        }
+        try {
+            mappedFile = MappedZipFile.open(file);
+            index = mappedFile.getIndex();
+            if (indexCache != null) {
+                indexCache.store(file, mappedFile);
+            }
+            return this;
+        } catch (IOException e) {
+            logger.warning("Failed to map Jar file " + file.getAbsolutePath() + ": "
+                    + e.getMessage());
+        }
+        return loadEntries();
+    }
+
+    /**
+     * Finds the class paths inside a fat jar: its classes directory, then each of the jars it
+     * contains, in name order. They are read in place from the mapping of this jar, jars which
+     * are compressed are inflated into memory. Only jars loaded with
+     * {@link #loadMappedEntries()} are searched, a jar without nested class paths has none.
+     * A jar which could not be mapped has none either, which is logged if it has a fat jar
+     * layout.
+     * <p>
+     * The classes directories are left out of the listing of this jar afterwards, or their
+     * classes would also be found under names such as {@code BOOT-INF.classes.com.app.App}.
+     */
+    public List<ClassPath> loadNestedEntries() {
+        List<ClassPath> nested = new ArrayList<>();
+        if (mappedFile == null) {
+            if (index != null && hasNestedClassPaths()) {
+                logger.warning("Classes and jars nested in " + file.getAbsolutePath()
+                        + " are not searched, the jar could not be mapped");
+            }
+            return nested;
+        }
+        for (String prefix : NESTED_CLASSES) {
+            if (index.isPackage(prefix.substring(0, prefix.length() - 1))) {
+                nested.add(new JARClassPath(file, mappedFile.subdirectory(prefix)));
+                index = index.without(prefix);
+            }
+        }
+        for (String prefix : NESTED_JARS) {
+            for (String name : index.listResources(normalize(prefix))) {
+                if (name.endsWith(".jar")) {
+                    try {
+                        nested.add(new JARClassPath(file, mappedFile.openNested(prefix + name)));
+                    } catch (IOException e) {
+                        logger.warning("Failed to read Jar file " + prefix + name + " in "
+                                + file.getAbsolutePath() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return nested;
+    }
+
+    private boolean hasNestedClassPaths() {
+        for (String prefix : NESTED_CLASSES) {
+            if (index.isPackage(normalize(prefix))) {
+                return true;
+            }
+        }
+        for (String prefix : NESTED_JARS) {
+            if (index.isPackage(normalize(prefix))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public boolean isResource(String resource) {
-        int index = resource.lastIndexOf("/");
-        String path = index == -1 ? "" : resource.substring(0, index);
-        String name = index == -1 ? resource : resource.substring(index + 1);
-        Package pkg = getPackage(path);
-        return pkg != null && pkg.resources.contains(name);
+        return index.indexOf(stripLeadingSlashes(resource)) >= 0;
     }
 
     @Override
     public boolean isPackage(String packageName) {
-        return getPackage(packageName) != null;
+        return index.isPackage(normalize(packageName));
     }
 
     @Override
     public String[] listPackages(String packageName) {
-        Package pkg = getPackage(packageName);
-        if (pkg == null) {
-            return new String[0];
-        }
-        Set<String> packages = pkg.packages.keySet();
-        return packages.toArray(new String[0]);
+        return index.listPackages(normalize(packageName));
     }
 
     @Override
     public String[] listResources(String packageName) {
-        Package pkg = getPackage(packageName);
-        if (pkg == null) {
-            return new String[0];
-        }
-        SortedSet<String> resources = pkg.resources;
-        return resources.toArray(new String[0]);
+        return index.listResources(normalize(packageName));
     }
 
     @Override
     public InputStream getResourceAsStream(String resource) {
-        while (resource.startsWith("/")) {
-            resource = resource.substring(1);
+        resource = stripLeadingSlashes(resource);
+        if (mappedFile != null) {
+            byte[] content = getResourceBytes(resource);
+            return content == null ? null : new ByteArrayInputStream(content);
         }
         ZipEntry entry = jarFile.getEntry(resource);
         if (entry == null) {
@@ -118,46 +200,56 @@ public class JARClassPath implements ClassPath {
         }
     }
 
+    @Override
+    public byte[] getResourceBytes(String resource) {
+        resource = stripLeadingSlashes(resource);
+        try {
+            if (mappedFile != null) {
+                return index.indexOf(resource) < 0 ? null : mappedFile.read(resource);
+            }
+            ZipEntry entry = jarFile.getEntry(resource);
+            if (entry == null || entry.isDirectory()) {
+                return null;
+            }
+            return ResourceBuffers.readFully(jarFile.getInputStream(entry), entry.getSize());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public String[] findResources(String rootPackageName, ResourceFilter resourceFilter) {
         return new ResourceFinder(this).findResources(rootPackageName, resourceFilter);
     }
 
-    private Package addPackage(String path) {
-        String[] parts = path.split("/");
-        Package pkg = root;
-        for (String name : parts) {
-            if (pkg.packages.containsKey(name)) {
-                pkg = pkg.packages.get(name);
-            } else {
-                Package newPkg = new Package();
-                pkg.packages.put(name, newPkg);
-                pkg = newPkg;
-            }
-        }
-        return pkg;
+    /**
+     * Passes the name of every package of the jar which holds resources to {@code action},
+     * see {@link ResourceIndex#forEachPackage(Consumer)}.
+     */
+    void forEachPackage(Consumer<String> action) {
+        index.forEachPackage(action);
     }
 
-    private void addResource(String resource) {
-        int index = resource.lastIndexOf("/");
-        String path = index == -1 ? "" : resource.substring(0, index);
-        String name = index == -1 ? resource : resource.substring(index + 1);
-        Package pkg = addPackage(path);
-        pkg.resources.add(name);
+    static String stripLeadingSlashes(String resource) {
+        while (resource.startsWith("/")) {
+            resource = resource.substring(1);
+        }
+        return resource;
     }
 
-    private Package getPackage(String packageName) {
-        String[] parts = packageName.split("/");
-        Package pkg = root;
-        for (String name : parts) {
-            if (name.isEmpty()) {
-                continue;
-            }
-            pkg = pkg.packages.get(name);
-            if (pkg == null) {
-                return null;
+    /**
+     * @return the package without empty parts, so "/a//b/" becomes "a/b".
+     */
+    static String normalize(String packageName) {
+        StringBuilder normalized = new StringBuilder(packageName.length());
+        for (String name : packageName.split("/")) {
+            if (!name.isEmpty()) {
+                if (normalized.length() > 0) {
+                    normalized.append('/');
+                }
+                normalized.append(name);
             }
         }
-        return pkg;
+        return normalized.toString();
     }
 }
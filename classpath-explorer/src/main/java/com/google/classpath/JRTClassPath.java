@@ -0,0 +1,273 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+/**
+ * The classes of a Java 9+ runtime image, read through the {@code jrt:/} file system.
+ * Packages are indexed once from the image's {@code /packages} directory, so finding the
+ * module of a class does not search all the modules.
+ * <p>
+ * The file system of another JDK's image stays open until {@link #close()}.
+ */
+public class JRTClassPath implements ClassPath, Closeable {
+
+    /**
+     * Class path entry which stands for the classes of the running JDK.
+     */
+    public static final String JDK = "jrt";
+
+    private static class Package {
+
+        private final Map<String, Package> packages = new TreeMap<>();
+        private final List<Path> directories = new ArrayList<>();
+    }
+
+    private static final URI JRT = URI.create("jrt:/");
+    private static final Logger logger = Logger.getLogger(JRTClassPath.class.getCanonicalName());
+
+    private final File javaHome;
+    private final Package root = new Package();
+    private FileSystem fileSystem;
+    /** Loads the jrt provider of another JDK, closed with its file system. */
+    private URLClassLoader providerLoader;
+
+    /**
+     * Reads the classes of the running JDK.
+     */
+    public JRTClassPath() {
+        this(null);
+    }
+
+    /**
+     * Reads the classes of the JDK installed in {@code javaHome}.
+     */
+    public JRTClassPath(File javaHome) {
+        this.javaHome = javaHome;
+    }
+
+    /**
+     * @return true if {@code directory} is the home of a JDK with a runtime image.
+     */
+    public static boolean isJavaHome(File directory) {
+        return new File(directory, "lib" + File.separator + "modules").isFile();
+    }
+
+    public ClassPath loadEntries() throws IOException {
+        try {
+            fileSystem = openFileSystem();
+            Path packages = fileSystem.getPath("/packages");
+            try (DirectoryStream<Path> packageDirectories = Files.newDirectoryStream(packages)) {
+                for (Path packageDirectory : packageDirectories) {
+                    String packageName = fileName(packageDirectory).replace('.', '/');
+                    Package pkg = addPackage(packageName);
+                    try (DirectoryStream<Path> modules =
+                            Files.newDirectoryStream(packageDirectory)) {
+                        for (Path module : modules) {
+                            pkg.directories.add(fileSystem.getPath("/modules", fileName(module),
+                                    packageName));
+                        }
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        return this;
+    }
+
+    private FileSystem openFileSystem() throws IOException {
+        try {
+            if (javaHome == null) {
+                return FileSystems.getFileSystem(JRT);
+            }
+            Map<String, String> env = Collections.singletonMap("java.home", javaHome.getPath());
+            // A runtime older than Java 9 has no jrt provider, the JDK's own jrt-fs.jar has one.
+            File jrtFs = new File(javaHome, "lib" + File.separator + "jrt-fs.jar");
+            providerLoader = new URLClassLoader(new URL[] {jrtFs.toURI().toURL()});
+            return FileSystems.newFileSystem(JRT, env, providerLoader);
+        } catch (ProviderNotFoundException | FileSystemNotFoundException e) {
+            String jdk = javaHome == null ? "the running JVM" : javaHome.getPath();
+            logger.warning("No runtime image found for " + jdk);
+            throw new IOException("No runtime image found for " + jdk, e);
+        }
+    }
+
+    /**
+     * Closes the file system of another JDK's image. The image of the running JDK is shared and
+     * stays open.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (javaHome != null && fileSystem != null) {
+                fileSystem.close();
+            }
+        } finally {
+            fileSystem = null;
+            if (providerLoader != null) {
+                providerLoader.close();
+                providerLoader = null;
+            }
+        }
+    }
+
+    @Override
+    public boolean isResource(String resource) {
+        return getResourcePath(resource) != null;
+    }
+
+    @Override
+    public boolean isPackage(String packageName) {
+        return getPackage(packageName) != null;
+    }
+
+    @Override
+    public String[] listPackages(String packageName) {
+        Package pkg = getPackage(packageName);
+        if (pkg == null) {
+            return new String[0];
+        }
+        return pkg.packages.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public String[] listResources(String packageName) {
+        Package pkg = getPackage(packageName);
+        if (pkg == null) {
+            return new String[0];
+        }
+        SortedSet<String> resources = new TreeSet<>();
+        for (Path directory : pkg.directories) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    if (Files.isRegularFile(file)) {
+                        resources.add(fileName(file));
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return resources.toArray(new String[0]);
+    }
+
+    @Override
+    public InputStream getResourceAsStream(String resource) {
+        Path path = getResourcePath(resource);
+        if (path == null) {
+            return null;
+        }
+        try {
+            return Files.newInputStream(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public byte[] getResourceBytes(String resource) {
+        Path path = getResourcePath(resource);
+        if (path == null) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String[] findResources(String rootPackageName, ResourceFilter resourceFilter) {
+        return new ResourceFinder(this).findResources(rootPackageName, resourceFilter);
+    }
+
+    private Path getResourcePath(String resource) {
+        while (resource.startsWith("/")) {
+            resource = resource.substring(1);
+        }
+        int index = resource.lastIndexOf("/");
+        String path = index == -1 ? "" : resource.substring(0, index);
+        String name = index == -1 ? resource : resource.substring(index + 1);
+        Package pkg = getPackage(path);
+        if (pkg == null || name.isEmpty()) {
+            return null;
+        }
+        for (Path directory : pkg.directories) {
+            Path file = directory.resolve(name);
+            if (Files.isRegularFile(file)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private Package addPackage(String path) {
+        Package pkg = root;
+        for (String name : path.split("/")) {
+            Package child = pkg.packages.get(name);
+            if (child == null) {
+                child = new Package();
+                pkg.packages.put(name, child);
+            }
+            pkg = child;
+        }
+        return pkg;
+    }
+
+    private Package getPackage(String packageName) {
+        Package pkg = root;
+        for (String name : packageName.split("/")) {
+            if (name.isEmpty()) {
+                continue;
+            }
+            pkg = pkg.packages.get(name);
+            if (pkg == null) {
+                return null;
+            }
+        }
+        return pkg;
+    }
+
+    private static String fileName(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A zip archive which is memory mapped and read without {@link java.util.zip.ZipFile}. The
+ * central directory is parsed once into a {@link ResourceIndex} holding the location of each
+ * entry, so no per entry objects are kept. Multi-disk and zip64 archives are not supported.
+ */
+class MappedZipFile {
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int CENTRAL_DIRECTORY_ENTRY = 0x02014b50;
+    private static final int CENTRAL_DIRECTORY_ENTRY_SIZE = 46;
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    /** The archive, for messages; nested archives are named "outer.jar!/inner.jar". */
+    private final String source;
+    private final ByteBuffer buffer;
+    /** The entries, with the offset of each one in the central directory as value. */
+    private final ResourceIndex index;
+    private final int centralDirectory;
+
+    private MappedZipFile(String source, ByteBuffer buffer, ResourceIndex index,
+            int centralDirectory) {
+        this.source = source;
+        this.buffer = buffer;
+        this.index = index;
+        this.centralDirectory = centralDirectory;
+    }
+
+    static MappedZipFile open(File file) throws IOException {
+        return parse(map(file), file.getPath());
+    }
+
+    private static MappedZipFile parse(ByteBuffer buffer, String source) throws ZipException {
+        int end = findEndOfCentralDirectory(buffer, source);
+        int count = buffer.getShort(end + 10) & 0xFFFF;
+        int offset = buffer.getInt(end + 16);
+
+        ResourceIndex.Builder index = new ResourceIndex.Builder();
+        int position = offset;
+        for (int i = 0; i < count; i++) {
+            if (position + CENTRAL_DIRECTORY_ENTRY_SIZE > buffer.limit()
+                    || buffer.getInt(position) != CENTRAL_DIRECTORY_ENTRY) {
+                throw new ZipException("Corrupt central directory: " + source);
+            }
+            int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            byte[] name = new byte[nameLength];
+            ByteBuffer view = buffer.duplicate();
+            view.position(position + CENTRAL_DIRECTORY_ENTRY_SIZE);
+            view.get(name);
+            index.add(name, position - offset);
+            position += CENTRAL_DIRECTORY_ENTRY_SIZE + nameLength + extraLength + commentLength;
+        }
+        return new MappedZipFile(source, buffer, index.build(), offset);
+    }
+
+    /**
+     * Maps {@code file} with an index read earlier by {@link #open(File)}, which is checked
+     * against the location, size and {@link #checksumCentralDirectory() checksum} of the
+     * archive's central directory.
+     */
+    static MappedZipFile open(File file, ResourceIndex index, int centralDirectory,
+            long checksum) throws IOException {
+        ByteBuffer buffer = map(file);
+        int end = findEndOfCentralDirectory(buffer, file.getPath());
+        if (buffer.getInt(end + 16) != centralDirectory
+                || (buffer.getShort(end + 10) & 0xFFFF) != index.size()
+                || checksum(buffer, centralDirectory, end) != checksum) {
+            throw new ZipException("Index does not match the archive: " + file);
+        }
+        return new MappedZipFile(file.getPath(), buffer, index, centralDirectory);
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ZipException("Archive too large to map: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer buffer, String source)
+            throws ZipException {
+        int lowest = Math.max(0, buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE - 0xFFFF);
+        for (int i = buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; i >= lowest; i--) {
+            if (buffer.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                int count = buffer.getShort(i + 10) & 0xFFFF;
+                int offset = buffer.getInt(i + 16);
+                if (count == 0xFFFF || offset == -1 || (buffer.getShort(i + 4) & 0xFFFF) != 0) {
+                    throw new ZipException(
+                            "Multi-disk and zip64 archives are not supported: " + source);
+                }
+                return i;
+            }
+        }
+        throw new ZipException("Not a zip archive: " + source);
+    }
+
+    ResourceIndex getIndex() {
+        return index;
+    }
+
+    int getCentralDirectory() {
+        return centralDirectory;
+    }
+
+    /**
+     * @return a checksum of the central directory. It holds the name, CRC, sizes and location
+     * of each entry, so it changes with the content of the archive, whatever the time and
+     * size of the file.
+     */
+    long checksumCentralDirectory() throws ZipException {
+        return checksum(buffer, centralDirectory, findEndOfCentralDirectory(buffer, source));
+    }
+
+    private static long checksum(ByteBuffer buffer, int from, int to) throws ZipException {
+        if (from < 0 || from > to) {
+            throw new ZipException("Corrupt central directory");
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(from);
+        view.limit(to);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return crc.getValue();
+    }
+
+    /**
+     * @return the uncompressed content of the entry, or null if there is no such resource.
+     */
+    byte[] read(String name) throws IOException {
+        int entry = entryOf(name);
+        if (entry < 0) {
+            return null;
+        }
+        int method = buffer.getShort(entry + 10) & 0xFFFF;
+        int compressedSize = buffer.getInt(entry + 20);
+        int size = buffer.getInt(entry + 24);
+        ByteBuffer view = buffer.duplicate();
+        view.position(dataOffset(name, entry));
+        if (method == STORED) {
+            byte[] content = new byte[compressedSize];
+            view.get(content);
+            return content;
+        } else if (method != DEFLATED) {
+            throw new ZipException("Unsupported compression method " + method + " of " + name
+                    + " in " + source);
+        }
+        // The compressed bytes only pass through a reused buffer on their way to the inflater.
+        byte[] compressed = ResourceBuffers.get(compressedSize);
+        view.get(compressed, 0, compressedSize);
+        Inflater inflater = inflaters.get();
+        try {
+            inflater.setInput(compressed, 0, compressedSize);
+            byte[] content = new byte[size];
+            int read = 0;
+            while (read < size) {
+                int inflated = inflater.inflate(content, read, size - read);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new ZipException("Truncated entry " + name + " in " + source);
+                }
+                read += inflated;
+            }
+            return content;
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt entry " + name + " in " + source + ": "
+                    + e.getMessage());
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    /**
+     * @return the archive stored as entry {@code name} of this one, or null if there is no
+     * such entry. An uncompressed entry is read in place, a compressed one is inflated into
+     * memory.
+     */
+    MappedZipFile openNested(String name) throws IOException {
+        int entry = entryOf(name);
+        if (entry < 0) {
+            return null;
+        }
+        String nestedSource = source + "!/" + name;
+        if ((buffer.getShort(entry + 10) & 0xFFFF) != STORED) {
+            return parse(ByteBuffer.wrap(read(name)).order(ByteOrder.LITTLE_ENDIAN), nestedSource);
+        }
+        ByteBuffer view = buffer.duplicate();
+        int data = dataOffset(name, entry);
+        view.position(data);
+        view.limit(data + buffer.getInt(entry + 20));
+        return parse(view.slice().order(ByteOrder.LITTLE_ENDIAN), nestedSource);
+    }
+
+    /**
+     * @return the entries under the directory {@code prefix}, which must end with '/', named
+     * relative to it.
+     */
+    MappedZipFile subdirectory(String prefix) {
+        return new MappedZipFile(source + "!/" + prefix, buffer, index.subdirectory(prefix),
+                centralDirectory);
+    }
+
+    /**
+     * @return the position of the resource in the central directory, or -1 if there is none.
+     */
+    private int entryOf(String name) {
+        int position = index.indexOf(name);
+        return position < 0 ? -1 : centralDirectory + index.getValue(position);
+    }
+
+    private int dataOffset(String name, int entry) throws ZipException {
+        int localHeader = buffer.getInt(entry + 42);
+        if (buffer.getInt(localHeader) != LOCAL_HEADER) {
+            throw new ZipException("Corrupt entry " + name + " in " + source);
+        }
+        return localHeader + LOCAL_HEADER_SIZE
+                + (buffer.getShort(localHeader + 26) & 0xFFFF)
+                + (buffer.getShort(localHeader + 28) & 0xFFFF);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merges sorted iterators of resource names into one sorted iterator, names which more than
+ * one of them has are returned once.
+ */
+public class MergedResourceIterator implements Iterator<String> {
+
+    private static class Head implements Comparable<Head> {
+
+        private final Iterator<String> iterator;
+        private String name;
+
+        private Head(Iterator<String> iterator) {
+            this.iterator = iterator;
+            this.name = iterator.next();
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            return name.compareTo(other.name);
+        }
+    }
+
+    private final PriorityQueue<Head> heads = new PriorityQueue<>();
+    private String last;
+
+    public MergedResourceIterator(List<Iterator<String>> iterators) {
+        for (Iterator<String> iterator : iterators) {
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!heads.isEmpty() && heads.peek().name.equals(last)) {
+            advance(heads.poll());
+        }
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Head head = heads.poll();
+        last = head.name;
+        advance(head);
+        return last;
+    }
+
+    private void advance(Head head) {
+        if (head.iterator.hasNext()) {
+            head.name = head.iterator.next();
+            heads.add(head);
+        }
+    }
+}
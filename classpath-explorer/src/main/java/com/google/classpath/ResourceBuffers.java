@@ -0,0 +1,95 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Per thread scratch buffers for reading resources, so that reading a resource allocates
+ * nothing but the array which is returned.
+ */
+final class ResourceBuffers {
+
+    private static final int INITIAL_SIZE = 16 * 1024;
+    /** Larger buffers are used once and not kept, a few huge resources should not pin memory. */
+    private static final int MAX_KEPT_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[INITIAL_SIZE];
+        }
+    };
+
+    private ResourceBuffers() {
+    }
+
+    /**
+     * @return a buffer of at least {@code size} bytes, which is only valid until the next call
+     * on the same thread.
+     */
+    static byte[] get(int size) {
+        byte[] buffer = buffers.get();
+        if (buffer.length < size) {
+            buffer = new byte[Math.max(size, buffer.length * 2)];
+            if (buffer.length <= MAX_KEPT_SIZE) {
+                buffers.set(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads all of {@code in} and closes it.
+     *
+     * @param size the number of bytes in the stream, or -1 if not known.
+     */
+    static byte[] readFully(InputStream in, long size) throws IOException {
+        try {
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("Resource too large: " + size + " bytes");
+            } else if (size >= 0) {
+                byte[] content = new byte[(int) size];
+                int read = 0;
+                while (read < content.length) {
+                    int count = in.read(content, read, content.length - read);
+                    if (count == -1) {
+                        throw new EOFException("Expected " + size + " bytes, got " + read);
+                    }
+                    read += count;
+                }
+                return content;
+            }
+            byte[] buffer = get(INITIAL_SIZE);
+            int read = 0;
+            int count;
+            while ((count = in.read(buffer, read, buffer.length - read)) != -1) {
+                read += count;
+                if (read == buffer.length) {
+                    byte[] larger = get(buffer.length * 2);
+                    System.arraycopy(buffer, 0, larger, 0, read);
+                    buffer = larger;
+                }
+            }
+            return Arrays.copyOf(buffer, read);
+        } finally {
+            in.close();
+        }
+    }
+}
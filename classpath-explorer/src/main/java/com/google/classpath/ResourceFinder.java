@@ -15,11 +15,101 @@
  */
 package com.google.classpath;
 
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 class ResourceFinder {
 
+    /**
+     * Walks the packages depth first, merging the resources and the sub packages of each
+     * package by name, so the resources come out in the order of their full names.
+     */
+    private class ResourceIterator implements Iterator<String> {
+
+        private final ResourceFilter resourceFilter;
+        private final Deque<PackageListing> stack = new ArrayDeque<>();
+        private final Set<String> visitedPackages = new HashSet<>();
+        private String next;
+
+        private ResourceIterator(String rootPackageName, ResourceFilter resourceFilter) {
+            this.resourceFilter = resourceFilter;
+            push(rootPackageName);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !stack.isEmpty()) {
+                PackageListing listing = stack.peek();
+                String resource = listing.peekResource(resourceFilter);
+                String pkg = listing.peekPackage();
+                if (resource == null && pkg == null) {
+                    stack.pop();
+                } else if (pkg == null || (resource != null && resource.compareTo(pkg + "/") < 0)) {
+                    listing.resource++;
+                    next = stripLeadingSlash(listing.packageName + "/" + resource);
+                } else {
+                    listing.pkg++;
+                    push(listing.packageName + "/" + pkg);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String result = next;
+            next = null;
+            return result;
+        }
+
+        private void push(String packageName) {
+            packageName = stripLeadingSlash(packageName);
+            if (visitedPackages.add(packageName)) {
+                stack.push(new PackageListing(packageName));
+            }
+        }
+    }
+
+    private class PackageListing {
+
+        private final String packageName;
+        private final String[] packages;
+        private final String[] resources;
+        private int pkg;
+        private int resource;
+
+        private PackageListing(String packageName) {
+            this.packageName = packageName;
+            this.packages = classPath.listPackages(packageName);
+            this.resources = classPath.listResources(packageName);
+            // By "<package>/", as their resources are ordered: "b-c/X" comes before "b/Y".
+            Arrays.sort(packages, (a, b) -> (a + "/").compareTo(b + "/"));
+            Arrays.sort(resources);
+        }
+
+        private String peekPackage() {
+            return pkg < packages.length ? packages[pkg] : null;
+        }
+
+        private String peekResource(ResourceFilter resourceFilter) {
+            while (resource < resources.length
+                    && !resourceFilter.match(packageName, resources[resource])) {
+                resource++;
+            }
+            return resource < resources.length ? resources[resource] : null;
+        }
+    }
+
     private final ClassPath classPath;
 
     public ResourceFinder(ClassPath classPath) {
@@ -27,31 +117,24 @@ class ResourceFinder {
     }
 
     public String[] findResources(String rootPackageName, ResourceFilter resourceFilter) {
-        SortedSet<String> resources = new TreeSet<>();
-        findResources(resources, rootPackageName, resourceFilter, new TreeSet<>());
+        List<String> resources = new ArrayList<>();
+        Iterator<String> iterator = iterateResources(rootPackageName, resourceFilter);
+        while (iterator.hasNext()) {
+            resources.add(iterator.next());
+        }
         return resources.toArray(new String[0]);
     }
 
-    private void findResources(
-            SortedSet<String> resources, String rootPackageName, ResourceFilter resourceFilter, TreeSet<String> visitedPackages) {
-        if (rootPackageName.startsWith("/")) {
-            rootPackageName = rootPackageName.substring(1);
-        }
-        if (visitedPackages.contains(rootPackageName)) {
-            return;
-        }
-        visitedPackages.add(rootPackageName);
-        for (String packageName : classPath.listPackages(rootPackageName)) {
-            findResources(resources, rootPackageName + "/" + packageName, resourceFilter, visitedPackages);
-        }
-        for (String resourceName : classPath.listResources(rootPackageName)) {
-            if (resourceFilter.match(rootPackageName, resourceName)) {
-                String name = rootPackageName + "/" + resourceName;
-                if (name.startsWith("/")) {
-                    name = name.substring(1);
-                }
-                resources.add(name);
-            }
-        }
+    /**
+     * @return the resources in the order of their names, each package is listed when the
+     * iteration gets to it.
+     */
+    public Iterator<String> iterateResources(String rootPackageName,
+            ResourceFilter resourceFilter) {
+        return new ResourceIterator(rootPackageName, resourceFilter);
+    }
+
+    private static String stripLeadingSlash(String name) {
+        return name.startsWith("/") ? name.substring(1) : name;
     }
 }
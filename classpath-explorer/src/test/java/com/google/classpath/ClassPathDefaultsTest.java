@@ -0,0 +1,109 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class path written against the interface before it had {@code getResourceBytes} and
+ * {@code iterateResources} gets them from the methods it does implement.
+ */
+class ClassPathDefaultsTest {
+
+    @TempDir
+    Path temp;
+
+    private ClassPath classPath;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        File root = temp.toFile();
+        for (String resource : new String[] {"a/b/Y.class", "a/b-c/X.class", "a/Z.class"}) {
+            File file = new File(root, resource);
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), resource.getBytes(StandardCharsets.UTF_8));
+        }
+        classPath = new MinimalClassPath(new DirectoryClassPath(root));
+    }
+
+    @Test
+    void testIterateResources() {
+        List<String> iterated = new ArrayList<>();
+        classPath.iterateResources("a", new RegExpResourceFilter(
+                RegExpResourceFilter.ANY, RegExpResourceFilter.ENDS_WITH_CLASS))
+                .forEachRemaining(iterated::add);
+        assertThat(iterated).containsExactly("a/Z.class", "a/b-c/X.class", "a/b/Y.class");
+    }
+
+    @Test
+    void testGetResourceBytes() {
+        assertThat(new String(classPath.getResourceBytes("a/b-c/X.class"),
+                StandardCharsets.UTF_8)).isEqualTo("a/b-c/X.class");
+        assertThat(classPath.getResourceBytes("a/b-c/W.class")).isNull();
+    }
+
+    /** Implements only the methods the interface had from the start. */
+    private static class MinimalClassPath implements ClassPath {
+        private final ClassPath delegate;
+
+        MinimalClassPath(ClassPath delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isResource(String resource) {
+            return delegate.isResource(resource);
+        }
+
+        @Override
+        public boolean isPackage(String packageName) {
+            return delegate.isPackage(packageName);
+        }
+
+        @Override
+        public String[] listResources(String packageName) {
+            return delegate.listResources(packageName);
+        }
+
+        @Override
+        public String[] listPackages(String packageName) {
+            return delegate.listPackages(packageName);
+        }
+
+        @Override
+        public InputStream getResourceAsStream(String resource) {
+            return delegate.getResourceAsStream(resource);
+        }
+
+        @Override
+        public String[] findResources(String rootPackageName, ResourceFilter resourceFilter) {
+            return delegate.findResources(rootPackageName, resourceFilter);
+        }
+    }
+}
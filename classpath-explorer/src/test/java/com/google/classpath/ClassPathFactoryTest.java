@@ -17,8 +17,13 @@ package com.google.classpath;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 
 import static java.io.File.separator;
 import static java.io.File.separatorChar;
@@ -102,6 +107,39 @@ class ClassPathFactoryTest {
         assertTrue(path.isResource(clazz(getClass())));
     }
 
+    @Test
+    void testUnreadableJarIsLeftOut(@TempDir Path temp) throws Exception {
+        File broken = write(temp.resolve("broken.jar").toFile(), "not a jar");
+        ClassPath path = new ClassPathFactory(null, 4).createFromPaths(
+                broken.getPath(), bin, "X-ABC-X", binTest);
+        assertTrue(path.isResource(clazz(ClassPathFactory.class)));
+        assertTrue(path.isResource(clazz(getClass())));
+    }
+
+    @Test
+    void testPathOrderIsKept(@TempDir Path temp) throws Exception {
+        String[] paths = new String[8];
+        for (int i = 0; i < paths.length; i++) {
+            File directory = temp.resolve("dir" + i).toFile();
+            directory.mkdirs();
+            write(new File(directory, "resource"), "dir" + i);
+            paths[i] = directory.getPath();
+        }
+        ClassPath path = new ClassPathFactory(null, 4).createFromPaths(paths);
+        try (InputStream in = path.getResourceAsStream("resource")) {
+            byte[] content = new byte[4];
+            assertEquals(4, in.read(content));
+            assertEquals("dir0", new String(content, "UTF-8"));
+        }
+    }
+
+    private File write(File file, String content) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes("UTF-8"));
+        }
+        return file;
+    }
+
     private String clazz(Class<?> clazz) {
         return clazz.getName().replace(".", "/") + ".class";
     }
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassPathIndexCacheTest {
+
+    @TempDir
+    Path temp;
+
+    private File jar;
+    private File cacheDir;
+    private ClassPathIndexCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        jar = temp.resolve("test-data.jar").toFile();
+        Files.copy(new File("test-data.jar").toPath(), jar.toPath());
+        cacheDir = temp.resolve("cache").toFile();
+        cache = new ClassPathIndexCache(cacheDir);
+    }
+
+    @Test
+    void testIndexIsReadFromCacheOnSecondLoad() throws IOException {
+        assertThat(cache.load(jar)).isNull();
+        ClassPath parsed = new JARClassPath(jar).loadMappedEntries(cache);
+        assertThat(cacheDir.list()).hasSize(1);
+        assertThat(cache.load(jar)).isNotNull();
+
+        ClassPath cached = new JARClassPath(jar).loadMappedEntries(cache);
+        assertThat(cached.listPackages("")).containsExactly(parsed.listPackages(""));
+        assertThat(cached.listResources("A")).containsExactly(parsed.listResources("A"));
+        assertThat(cached.isResource("A/1.file")).isTrue();
+        try (InputStream in = cached.getResourceAsStream("A/1.file")) {
+            assertThat(in).isNotNull();
+        }
+    }
+
+    @Test
+    void testChangedJarMissesTheCache() throws IOException {
+        new JARClassPath(jar).loadMappedEntries(cache);
+        assertThat(jar.setLastModified(jar.lastModified() - 10000)).isTrue();
+
+        assertThat(cache.load(jar)).isNull();
+    }
+
+    @Test
+    void testJarRewrittenWithTheSameSizeAndTimeMissesTheCache() throws IOException {
+        File rewritten = temp.resolve("rewritten.jar").toFile();
+        writeJar(jar, "aaa");
+        writeJar(rewritten, "bbb");
+        assertThat(rewritten.length()).isEqualTo(jar.length());
+        long modified = jar.lastModified();
+        new JARClassPath(jar).loadMappedEntries(cache);
+        assertThat(cache.load(jar)).isNotNull();
+
+        Files.copy(rewritten.toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertThat(jar.setLastModified(modified)).isTrue();
+
+        assertThat(cache.load(jar)).isNull();
+        ClassPath path = new JARClassPath(jar).loadMappedEntries(cache);
+        assertThat(new String(path.getResourceBytes("a/B.class"), StandardCharsets.UTF_8))
+                .isEqualTo("bbb");
+    }
+
+    @Test
+    void testCorruptIndexIsIgnored() throws IOException {
+        new JARClassPath(jar).loadMappedEntries(cache);
+        for (File index : cacheDir.listFiles()) {
+            try (FileOutputStream out = new FileOutputStream(index)) {
+                out.write(new byte[] {1, 2, 3});
+            }
+        }
+
+        assertThat(cache.load(jar)).isNull();
+        ClassPath path = new JARClassPath(jar).loadMappedEntries(cache);
+        assertThat(path.isResource("A/1.file")).isTrue();
+    }
+
+    @Test
+    void testTruncatedIndexIsIgnored() throws IOException {
+        new JARClassPath(jar).loadMappedEntries(cache);
+        for (File index : cacheDir.listFiles()) {
+            byte[] content = Files.readAllBytes(index.toPath());
+            Files.write(index.toPath(), Arrays.copyOf(content, content.length - 1));
+        }
+
+        assertThat(cache.load(jar)).isNull();
+    }
+
+    @Test
+    void testDirectoryListingIsReadFromCacheOnSecondLoad() throws IOException {
+        File root = directoryTree();
+        ClassPath walked = new DirectoryClassPath(root).loadEntries(cache);
+        assertThat(cache.loadDirectory(root)).isNotNull();
+
+        // Deleted without changing the time of its directory, which the cache can not tell.
+        Path b = root.toPath().resolve("a/b");
+        FileTime modified = Files.getLastModifiedTime(b);
+        Files.delete(b.resolve("C.class"));
+        Files.setLastModifiedTime(b, modified);
+        ClassPath cached = new DirectoryClassPath(root).loadEntries(cache);
+        assertThat(cached.listPackages("")).containsExactly(walked.listPackages(""));
+        assertThat(cached.listPackages("a")).containsExactly("b");
+        assertThat(cached.listResources("a/b")).containsExactly("C.class");
+        assertThat(cached.isResource("a/B.class")).isTrue();
+    }
+
+    @Test
+    void testChangedDirectoryMissesTheCache() throws IOException {
+        File root = directoryTree();
+        new DirectoryClassPath(root).loadEntries(cache);
+
+        Files.write(root.toPath().resolve("a/b/D.class"), new byte[0]);
+
+        assertThat(cache.loadDirectory(root)).isNull();
+        ClassPath walked = new DirectoryClassPath(root).loadEntries(cache);
+        assertThat(walked.listResources("a/b")).containsExactly("C.class", "D.class");
+    }
+
+    @Test
+    void testDirectoryChangedWhileWalkedIsNotCached() throws IOException {
+        File root = directoryTree();
+        Files.write(root.toPath().resolve("a/B.class"), new byte[0]);
+        Files.setLastModifiedTime(root.toPath().resolve("a"),
+                FileTime.fromMillis(System.currentTimeMillis()));
+
+        new DirectoryClassPath(root).loadEntries(cache);
+
+        assertThat(cache.loadDirectory(root)).isNull();
+    }
+
+    /**
+     * @return a tree of a/B.class and a/b/C.class, with times far enough in the past to be
+     * cached.
+     */
+    private void writeJar(File file, String content) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            byte[] data = content.getBytes(StandardCharsets.UTF_8);
+            ZipEntry entry = new ZipEntry("a/B.class");
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCrc(crc.getValue());
+            entry.setTime(0);
+            out.putNextEntry(entry);
+            out.write(data);
+            out.closeEntry();
+        }
+    }
+
+    private File directoryTree() throws IOException {
+        Path root = temp.resolve("classes");
+        Files.createDirectories(root.resolve("a/b"));
+        Files.write(root.resolve("a/B.class"), new byte[0]);
+        Files.write(root.resolve("a/b/C.class"), new byte[0]);
+        FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+        for (String directory : new String[] {"", "a", "a/b"}) {
+            Files.setLastModifiedTime(root.resolve(directory), past);
+        }
+        return root.toFile();
+    }
+}
@@ -102,6 +102,16 @@ public abstract class ClassPathTest {
                 "A/2.file", "A/B/3.file");
     }
 
+    @Test
+    void testIterateResources() {
+        RegExpResourceFilter anyFile = new RegExpResourceFilter(ANY, ".*\\.file");
+        assertThat(path.iterateResources("X", anyFile)).isExhausted();
+        assertThat(path.iterateResources("", anyFile)).toIterable()
+                .containsExactly("A/1.file", "A/2.file", "A/B/3.file");
+        assertThat(path.iterateResources("/A/B", anyFile)).toIterable()
+                .containsExactly("A/B/3.file");
+    }
+
     @Test
     void testReadResource() throws Exception {
         assertEquals("FILE1", read(path.getResourceAsStream("A/1.file")));
@@ -111,6 +121,15 @@ public abstract class ClassPathTest {
         assertNull(path.getResourceAsStream("NON_EXISTANT"));
     }
 
+    @Test
+    void testReadResourceBytes() throws Exception {
+        assertEquals("FILE1", new String(path.getResourceBytes("A/1.file"), "UTF-8"));
+        assertEquals("FILE1", new String(path.getResourceBytes("/A/1.file"), "UTF-8"));
+        assertNull(path.getResourceBytes("A/1.file/"));
+        assertNull(path.getResourceBytes("A"));
+        assertNull(path.getResourceBytes("NON_EXISTANT"));
+    }
+
     private String read(InputStream is) throws IOException {
         StringBuilder buf = new StringBuilder();
         int ch;
@@ -15,8 +15,22 @@
  */
 package com.google.classpath;
 
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 public class CompositClassPathTest extends ClassPathTest {
 
@@ -27,4 +41,70 @@ public class CompositClassPathTest extends ClassPathTest {
         return new CompositeClassPath(dirClassPath, jarClassPath);
     }
 
+    @Test
+    void testFirstClassPathWithResourceWins(@TempDir Path temp) throws IOException {
+        File first = jar(temp.resolve("first.jar").toFile(), "x/a", "x/first");
+        File directory = temp.resolve("dir").toFile();
+        new File(directory, "x").mkdirs();
+        Files.write(new File(directory, "x/a").toPath(), "dir".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, "x/b").toPath(), "dir".getBytes(StandardCharsets.UTF_8));
+        File last = jar(temp.resolve("last.jar").toFile(), "x/b", "x/c");
+
+        ClassPath composite = new CompositeClassPath(
+                new JARClassPath(first).loadMappedEntries(),
+                new DirectoryClassPath(directory),
+                new JARClassPath(last).loadEntries());
+
+        assertThat(read(composite, "x/a")).isEqualTo("first.jar");
+        assertThat(read(composite, "x/b")).isEqualTo("dir");
+        assertThat(read(composite, "/x/c")).isEqualTo("last.jar");
+        assertThat(composite.isResource("x/first")).isTrue();
+        assertThat(composite.isResource("/x/b")).isTrue();
+        assertThat(composite.isResource("x/d")).isFalse();
+        assertThat(composite.isResource("x")).isFalse();
+        assertThat(composite.getResourceAsStream("x/d")).isNull();
+    }
+
+    @Test
+    void testPackagesWithCharactersBelowSlashAreMergedInOrder(@TempDir Path temp)
+            throws IOException {
+        File first = jar(temp.resolve("first.jar").toFile(), "a/b/Y.class", "a/b-c/X.class");
+        File directory = temp.resolve("dir").toFile();
+        for (String resource : new String[] {"a/b/Y.class", "a/b.d/Z.class", "a/b-c/X.class"}) {
+            File file = new File(directory, resource);
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), "dir".getBytes(StandardCharsets.UTF_8));
+        }
+
+        ClassPath composite = new CompositeClassPath(
+                new JARClassPath(first).loadMappedEntries(),
+                new DirectoryClassPath(directory));
+        RegExpResourceFilter classes = new RegExpResourceFilter(
+                RegExpResourceFilter.ANY, RegExpResourceFilter.ENDS_WITH_CLASS);
+
+        assertThat(composite.findResources("", classes))
+                .containsExactly("a/b-c/X.class", "a/b.d/Z.class", "a/b/Y.class");
+        List<String> iterated = new ArrayList<>();
+        composite.iterateResources("a", classes).forEachRemaining(iterated::add);
+        assertThat(iterated).containsExactly("a/b-c/X.class", "a/b.d/Z.class", "a/b/Y.class");
+    }
+
+    private File jar(File file, String... resources) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            for (String resource : resources) {
+                out.putNextEntry(new JarEntry(resource));
+                out.write(file.getName().getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private String read(ClassPath classPath, String resource) throws IOException {
+        try (InputStream in = classPath.getResourceAsStream(resource)) {
+            byte[] content = new byte[64];
+            int length = in.read(content);
+            return new String(content, 0, length, StandardCharsets.UTF_8);
+        }
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexedDirectoryClassPathTest extends ClassPathTest {
+
+    @Override
+    protected ClassPath createClassPath() throws IOException {
+        return new DirectoryClassPath(new File("test-data")).loadEntries();
+    }
+
+    @Test
+    void testNonExistantDirectory() throws IOException {
+        ClassPath classPath = new DirectoryClassPath(new File("NON_EXISTENT")).loadEntries();
+        assertThat(classPath.listPackages("")).isEmpty();
+        assertThat(classPath.isResource("A/1.file")).isFalse();
+    }
+
+    @Test
+    void testIndexIsNotUpdatedWithoutWatching(@TempDir Path temp) throws IOException {
+        ClassPath classPath = new DirectoryClassPath(temp.toFile()).loadEntries();
+        Files.write(temp.resolve("new.file"), new byte[] {1});
+        assertThat(classPath.isResource("new.file")).isFalse();
+    }
+
+    @Test
+    void testWatchedIndexSeesNewAndDeletedResources(@TempDir Path temp) throws Exception {
+        Files.createDirectories(temp.resolve("a"));
+        Files.write(temp.resolve("a/old.file"), new byte[] {1});
+        try (DirectoryClassPath classPath = new DirectoryClassPath(temp.toFile()).watch()) {
+            assertThat(classPath.isResource("a/old.file")).isTrue();
+
+            Files.createDirectories(temp.resolve("a/b"));
+            Files.write(temp.resolve("a/b/new.file"), new byte[] {1});
+            Files.delete(temp.resolve("a/old.file"));
+
+            long deadline = System.currentTimeMillis() + 20000;
+            while (System.currentTimeMillis() < deadline
+                    && (!classPath.isResource("a/b/new.file") || classPath.isResource("a/old.file"))) {
+                Thread.sleep(50);
+            }
+            assertThat(classPath.isResource("a/b/new.file")).isTrue();
+            assertThat(classPath.isResource("a/old.file")).isFalse();
+            assertThat(classPath.getResourceAsStream("a/old.file")).isNull();
+        }
+    }
+}
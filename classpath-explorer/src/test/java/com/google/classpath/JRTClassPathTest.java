@@ -0,0 +1,101 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedFileSystemException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class JRTClassPathTest {
+
+    private ClassPath classPath;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        assumeTrue(JRTClassPath.isJavaHome(new File(System.getProperty("java.home"))),
+                "Needs a Java 9+ runtime image");
+        classPath = new JRTClassPath().loadEntries();
+    }
+
+    @Test
+    void testPackages() {
+        assertThat(classPath.isPackage("java/lang")).isTrue();
+        assertThat(classPath.isPackage("/java/util/concurrent")).isTrue();
+        assertThat(classPath.isPackage("com/google/classpath")).isFalse();
+        assertThat(classPath.listPackages("java")).contains("lang", "util");
+    }
+
+    @Test
+    void testResources() throws IOException {
+        assertThat(classPath.isResource("java/lang/String.class")).isTrue();
+        assertThat(classPath.isResource("java/lang/NoSuchClass.class")).isFalse();
+        assertThat(classPath.isResource("java/lang")).isFalse();
+        assertThat(classPath.listResources("java/lang")).contains("Object.class", "String.class");
+        try (InputStream in = classPath.getResourceAsStream("/java/lang/Object.class")) {
+            assertThat(in).isNotNull();
+            assertThat(in.read()).isEqualTo(0xCA);
+        }
+        assertThat(classPath.getResourceAsStream("java/lang/NoSuchClass.class")).isNull();
+    }
+
+    @Test
+    void testResourcesOfSeveralModules() {
+        // java.awt is in java.desktop, java.util.function in java.base
+        assertThat(classPath.isResource("java/awt/Point.class")).isTrue();
+        assertThat(classPath.findResources("java/util/function", new RegExpResourceFilter(
+                RegExpResourceFilter.ANY, "Function.*"))).contains("java/util/function/Function.class");
+    }
+
+    @Test
+    void testCloseReleasesImageOfJavaHome() throws IOException {
+        JRTClassPath home = new JRTClassPath(new File(System.getProperty("java.home")));
+        home.loadEntries();
+        assertThat(home.isResource("java/lang/Object.class")).isTrue();
+
+        home.close();
+        home.close();
+
+        assertThatThrownBy(() -> home.isResource("java/lang/Object.class"))
+                .isInstanceOf(ClosedFileSystemException.class);
+    }
+
+    @Test
+    void testCloseKeepsImageOfRunningJDK() throws IOException {
+        ((JRTClassPath) classPath).close();
+
+        assertThat(new JRTClassPath().loadEntries().isResource("java/lang/Object.class")).isTrue();
+    }
+
+    @Test
+    void testCreateFromPathWithJDKEntry() {
+        ClassPath path = new ClassPathFactory().createFromPath(JRTClassPath.JDK);
+        assertThat(path.isResource("java/lang/Object.class")).isTrue();
+    }
+
+    @Test
+    void testCreateFromJavaHome() {
+        ClassPath path = new ClassPathFactory().createFromPaths(System.getProperty("java.home"));
+        assertThat(path.isResource("java/lang/Object.class")).isTrue();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MergedResourceIteratorTest {
+
+    @Test
+    void testMergesInOrderWithoutDuplicates() {
+        Iterator<String> merged = new MergedResourceIterator(Arrays.asList(
+                Arrays.asList("a/1", "a/3", "b/1").iterator(),
+                Collections.<String>emptyIterator(),
+                Arrays.asList("a/2", "a/3", "c").iterator(),
+                Arrays.asList("a/3").iterator()));
+        assertThat(merged).toIterable().containsExactly("a/1", "a/2", "a/3", "b/1", "c");
+    }
+
+    @Test
+    void testNothingToMerge() {
+        assertThat(new MergedResourceIterator(Collections.emptyList())).isExhausted();
+    }
+}
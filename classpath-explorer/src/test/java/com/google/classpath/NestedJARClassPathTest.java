@@ -0,0 +1,162 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NestedJARClassPathTest {
+
+    @TempDir
+    Path temp;
+
+    private File fatJar;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fatJar = temp.resolve("app.jar").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(fatJar))) {
+            add(out, "BOOT-INF/classes/", null, true);
+            add(out, "BOOT-INF/classes/com/app/App.class", bytes("app"), false);
+            add(out, "BOOT-INF/lib/", null, true);
+            add(out, "BOOT-INF/lib/stored.jar", jar("com/stored/Lib.class", "stored"), true);
+            add(out, "BOOT-INF/lib/deflated.jar", jar("com/deflated/Lib.class", "deflated"),
+                    false);
+            add(out, "BOOT-INF/lib/notes.txt", bytes("not a jar"), false);
+            add(out, "org/springframework/boot/loader/Launcher.class", bytes("loader"), false);
+        }
+    }
+
+    @Test
+    void testNestedClassesAndJarsAreFound() throws IOException {
+        JARClassPath jar = new JARClassPath(fatJar);
+        jar.loadMappedEntries();
+        List<ClassPath> nested = jar.loadNestedEntries();
+
+        assertThat(nested).hasSize(3);
+        assertThat(nested.get(0).listPackages("")).containsExactly("com");
+        assertThat(nested.get(0).isResource("com/app/App.class")).isTrue();
+        assertThat(nested.get(1).isResource("com/deflated/Lib.class")).isTrue();
+        assertThat(nested.get(2).isResource("com/stored/Lib.class")).isTrue();
+    }
+
+    @Test
+    void testFactoryUsesNestedClassPaths() {
+        ClassPath path = new ClassPathFactory().createFromPaths(fatJar.getPath());
+
+        assertThat(read(path, "com/app/App.class")).isEqualTo("app");
+        assertThat(read(path, "com/stored/Lib.class")).isEqualTo("stored");
+        assertThat(read(path, "/com/deflated/Lib.class")).isEqualTo("deflated");
+        assertThat(read(path, "org/springframework/boot/loader/Launcher.class"))
+                .isEqualTo("loader");
+        assertThat(path.isResource("BOOT-INF/classes/com/app/App.class")).isFalse();
+        assertThat(path.findResources("com", new RegExpResourceFilter(
+                RegExpResourceFilter.ANY, RegExpResourceFilter.ENDS_WITH_CLASS)))
+                .containsExactly("com/app/App.class", "com/deflated/Lib.class",
+                        "com/stored/Lib.class");
+    }
+
+    @Test
+    void testNestedClassesAreNotListedUnderTheirDirectory() {
+        ClassPath path = new ClassPathFactory().createFromPaths(fatJar.getPath());
+        RegExpResourceFilter classes = new RegExpResourceFilter(
+                RegExpResourceFilter.ANY, RegExpResourceFilter.ENDS_WITH_CLASS);
+
+        assertThat(path.findResources("", classes))
+                .contains("com/app/App.class")
+                .noneMatch(name -> name.startsWith("BOOT-INF/classes/"));
+        List<String> iterated = new ArrayList<>();
+        path.iterateResources("", classes).forEachRemaining(iterated::add);
+        assertThat(iterated)
+                .contains("com/app/App.class")
+                .noneMatch(name -> name.startsWith("BOOT-INF/classes/"));
+        assertThat(path.listPackages("BOOT-INF")).containsExactly("lib");
+        assertThat(path.getResourceBytes("BOOT-INF/classes/com/app/App.class")).isNull();
+    }
+
+    @Test
+    void testJarsOutsideTheLibDirectoriesAreResources() throws IOException {
+        File plainJar = temp.resolve("plain.jar").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(plainJar))) {
+            add(out, "com/plain/Plain.class", bytes("plain"), false);
+            add(out, "fixture.jar", jar("com/fixture/Fixture.class", "fixture"), true);
+        }
+        JARClassPath jar = new JARClassPath(plainJar);
+        jar.loadMappedEntries();
+
+        assertThat(jar.loadNestedEntries()).isEmpty();
+        assertThat(jar.isResource("fixture.jar")).isTrue();
+        ClassPath path = new ClassPathFactory().createFromPaths(plainJar.getPath());
+        assertThat(path.isResource("com/fixture/Fixture.class")).isFalse();
+    }
+
+    @Test
+    void testUnmappedJarHasNoNestedClassPaths() throws IOException {
+        JARClassPath jar = new JARClassPath(fatJar);
+        jar.loadEntries();
+        assertThat(jar.loadNestedEntries()).isEmpty();
+    }
+
+    private String read(ClassPath path, String resource) {
+        byte[] content = path.getResourceBytes(resource);
+        return content == null ? null : new String(content, StandardCharsets.UTF_8);
+    }
+
+    private byte[] jar(String resource, String content) throws IOException {
+        ByteArrayOutputStream jar = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(jar)) {
+            add(out, resource, bytes(content), false);
+        }
+        return jar.toByteArray();
+    }
+
+    private void add(ZipOutputStream out, String name, byte[] content, boolean stored)
+            throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            byte[] data = content == null ? new byte[0] : content;
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        if (content != null) {
+            out.write(content);
+        }
+        out.closeEntry();
+    }
+
+    private byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
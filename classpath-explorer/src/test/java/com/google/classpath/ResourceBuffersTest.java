@@ -0,0 +1,78 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResourceBuffersTest {
+
+    private static class TrackingStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        TrackingStream(byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            // Hands out small chunks, like an inflating stream does.
+            return super.read(b, off, Math.min(len, 1000));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private final byte[] content = new byte[100 * 1024 + 7];
+
+    ResourceBuffersTest() {
+        new Random(42).nextBytes(content);
+    }
+
+    @Test
+    void testReadWithUnknownSize() throws IOException {
+        TrackingStream in = new TrackingStream(content);
+        assertThat(ResourceBuffers.readFully(in, -1)).isEqualTo(content);
+        assertThat(in.closed).isTrue();
+        assertThat(ResourceBuffers.readFully(new TrackingStream(new byte[0]), -1)).isEmpty();
+    }
+
+    @Test
+    void testReadWithKnownSize() throws IOException {
+        TrackingStream in = new TrackingStream(content);
+        assertThat(ResourceBuffers.readFully(in, content.length)).isEqualTo(content);
+        assertThat(in.closed).isTrue();
+    }
+
+    @Test
+    void testTruncatedStreamIsAnError() {
+        TrackingStream in = new TrackingStream(content);
+        assertThatThrownBy(() -> ResourceBuffers.readFully(in, content.length + 1))
+                .isInstanceOf(EOFException.class);
+        assertThat(in.closed).isTrue();
+    }
+}
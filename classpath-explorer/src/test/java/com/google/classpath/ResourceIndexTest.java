@@ -0,0 +1,147 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.classpath;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResourceIndexTest {
+
+    private ResourceIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ResourceIndex.Builder()
+                .add("b/x.class", 1)
+                .add("a/", 2)
+                .add("a/b/c/deep.class", 3)
+                .add("a/a.class", 4)
+                .add("a/b/b.class", 5)
+                .add("a/b0.class", 6)
+                .add("root.txt", 7)
+                .add("é/e.class", 8)
+                .build();
+    }
+
+    @Test
+    void testNamesAreSortedByPackageWithTheirValues() {
+        assertThat(index.size()).isEqualTo(8);
+        assertThat(index.getName(0)).isEqualTo("root.txt");
+        assertThat(index.getValue(0)).isEqualTo(7);
+        assertThat(index.getName(1)).isEqualTo("a/");
+        assertThat(index.getValue(1)).isEqualTo(2);
+        assertThat(index.getName(7)).isEqualTo("é/e.class");
+        assertThat(index.getValue(index.indexOf("a/b0.class"))).isEqualTo(6);
+    }
+
+    @Test
+    void testLookup() {
+        assertThat(index.indexOf("root.txt")).isNotNegative();
+        assertThat(index.indexOf("a/b")).isNegative();
+        assertThat(index.indexOf("a/")).isNegative();
+        assertThat(index.isPackage("")).isTrue();
+        assertThat(index.isPackage("a/b/c")).isTrue();
+        assertThat(index.isPackage("a/b0.class")).isFalse();
+        assertThat(index.isPackage("é")).isTrue();
+    }
+
+    @Test
+    void testListingSkipsSubPackages() {
+        assertThat(index.listPackages("")).containsExactly("a", "b", "é");
+        assertThat(index.listResources("")).containsExactly("root.txt");
+        assertThat(index.listPackages("a")).containsExactly("b");
+        assertThat(index.listResources("a")).containsExactly("a.class", "b0.class");
+        assertThat(index.listResources("a/b")).containsExactly("b.class");
+        assertThat(index.listResources("missing")).isEmpty();
+    }
+
+    @Test
+    void testForEachPackageSkipsPackagesWithoutResources() {
+        List<String> packages = new ArrayList<>();
+        index.forEachPackage(packages::add);
+        assertThat(packages).containsExactly("", "a/", "a/b/", "a/b/c/", "b/", "é/");
+        List<String> none = new ArrayList<>();
+        new ResourceIndex.Builder().add("a/", 0).add("a/b/", 0).build().forEachPackage(none::add);
+        assertThat(none).isEmpty();
+    }
+
+    @Test
+    void testSubdirectory() {
+        ResourceIndex sub = index.subdirectory("a/b/");
+        assertThat(sub.size()).isEqualTo(2);
+        assertThat(sub.listPackages("")).containsExactly("c");
+        assertThat(sub.listResources("")).containsExactly("b.class");
+        assertThat(sub.getValue(sub.indexOf("c/deep.class"))).isEqualTo(3);
+    }
+
+    @Test
+    void testWithout() {
+        ResourceIndex rest = index.without("a/b/");
+        assertThat(rest.size()).isEqualTo(6);
+        assertThat(rest.listPackages("a")).isEmpty();
+        assertThat(rest.listResources("a")).containsExactly("a.class", "b0.class");
+        assertThat(rest.getValue(rest.indexOf("root.txt"))).isEqualTo(7);
+        assertThat(index.without("none/")).isSameAs(index);
+    }
+
+    @Test
+    void testPackagesAreListedInTheOrderOfTheirEntries() {
+        ResourceIndex dashed = new ResourceIndex.Builder()
+                .add("a/b/x.class", 0)
+                .add("a/b-c/y.class", 0)
+                .add("a/b0/z.class", 0)
+                .build();
+        assertThat(dashed.listPackages("a")).containsExactly("b-c", "b", "b0");
+        assertThat(dashed.isPackage("a")).isTrue();
+        assertThat(dashed.listResources("a")).isEmpty();
+    }
+
+    @Test
+    void testWrittenIndexIsReadBack() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        ResourceIndex read = ResourceIndex.read(ByteBuffer.wrap(bytes.toByteArray()));
+
+        assertThat(read.size()).isEqualTo(index.size());
+        for (int i = 0; i < index.size(); i++) {
+            assertThat(read.getName(i)).isEqualTo(index.getName(i));
+            assertThat(read.getValue(i)).isEqualTo(index.getValue(i));
+        }
+        assertThat(read.listPackages("")).containsExactly("a", "b", "é");
+    }
+
+    @Test
+    void testCorruptIndexIsNotRead() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        byte[] corrupt = bytes.toByteArray();
+        // The first package offset, which must be 0.
+        corrupt[19] = 1;
+
+        assertThatThrownBy(() -> ResourceIndex.read(ByteBuffer.wrap(corrupt)))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -3,16 +3,18 @@
 package com.google.maven;
 
 import com.google.classpath.ClassPath;
-import com.google.classpath.ClassPathFactory;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
+import com.google.test.metric.AnalysisBudget;
+import com.google.test.metric.ClassInfoCache;
 import com.google.test.metric.ClassRepository;
 import com.google.test.metric.ConfigModule.Error;
 import com.google.test.metric.ConfigModule.Output;
 import com.google.test.metric.JavaClassRepository;
 import com.google.test.metric.JavaTestabilityRunner;
+import com.google.test.metric.MethodBodyBudget;
 import com.google.test.metric.RegExpWhiteList;
 import com.google.test.metric.ReportGeneratorProvider;
 import com.google.test.metric.ReportGeneratorProvider.ReportFormat;
@@ -42,7 +44,7 @@ public class MavenConfigModule extends AbstractModule {
 
   @Override
   protected void configure() {
-    bind(ClassPath.class).toInstance(new ClassPathFactory().createFromPath(
+    bind(ClassPath.class).toInstance(testabilityExplorerMojo.getClassPathFactory().createFromPath(
         testabilityExplorerMojo.mavenProject.getBuild().getOutputDirectory()));
     ReportOptions options = new ReportOptions(testabilityExplorerMojo.cyclomatic,
         testabilityExplorerMojo.global, testabilityExplorerMojo.constructor,
@@ -55,10 +57,25 @@ public class MavenConfigModule extends AbstractModule {
     bind(WhiteList.class).toInstance(new RegExpWhiteList(testabilityExplorerMojo.whiteList));
     bind(ReportFormat.class).toInstance(ReportFormat.valueOf(testabilityExplorerMojo.format));
     bindConstant().annotatedWith(Names.named("printDepth")).to(testabilityExplorerMojo.printDepth);
+    bindConstant().annotatedWith(Names.named("threads")).to(testabilityExplorerMojo.threads);
+    bind(AnalysisBudget.class).annotatedWith(Names.named("methodBudget")).toInstance(
+        budget(testabilityExplorerMojo.maxMethodOperations,
+            testabilityExplorerMojo.maxMethodFrames, testabilityExplorerMojo.maxMethodMillis));
+    bind(AnalysisBudget.class).annotatedWith(Names.named("classBudget")).toInstance(
+        budget(testabilityExplorerMojo.maxClassOperations,
+            testabilityExplorerMojo.maxClassFrames, testabilityExplorerMojo.maxClassMillis));
     bind(new TypeLiteral<List<String>>() {}).toInstance(Arrays.asList(testabilityExplorerMojo.filter));
     bind(Runnable.class).to(JavaTestabilityRunner.class);
   }
 
+  private AnalysisBudget budget(Integer maxOperations, Integer maxFrames, Integer maxMillis) {
+    return new AnalysisBudget(orZero(maxOperations), orZero(maxFrames), orZero(maxMillis));
+  }
+
+  private int orZero(Integer value) {
+    return value == null ? 0 : value;
+  }
+
   @Provides ReportGenerator generateHtmlReportAsWellAsRequestedFormat(
       ReportGeneratorProvider requestedReportProvider,
       ClassPath classPath, ReportOptions options,
@@ -75,8 +92,11 @@ public class MavenConfigModule extends AbstractModule {
     return new MultiReportGenerator(htmlReportGenerator, requestedReportProvider.get());
   }
 
-  @Provides ClassRepository getClassRepo(TestabilityExplorerMojo mojo) {
-    return new JavaClassRepository(mojo.getProjectClasspath());
+  @Provides ClassRepository getClassRepo(TestabilityExplorerMojo mojo, WhiteList whiteList) {
+    return new JavaClassRepository(mojo.getProjectClasspath(),
+        mojo.cacheDirectory == null ? null : new ClassInfoCache(mojo.cacheDirectory),
+        whiteList, mojo.maxBodyMemory == null || mojo.maxBodyMemory == 0 ? null
+            : new MethodBodyBudget(mojo.maxBodyMemory * 1024L * 1024L));
   }
 
   @Provides @Output PrintStream getOutput(TestabilityExplorerMojo mojo, ReportFormat format) {
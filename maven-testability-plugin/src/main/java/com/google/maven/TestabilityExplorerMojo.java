@@ -2,6 +2,7 @@ package com.google.maven;
 
 import com.google.classpath.ClassPath;
 import com.google.classpath.ClassPathFactory;
+import com.google.classpath.ClassPathIndexCache;
 import com.google.inject.Guice;
 import com.google.test.metric.JavaTestabilityRunner;
 
@@ -121,6 +122,72 @@ public class TestabilityExplorerMojo extends AbstractMavenReport {
    */
   Integer worstOffenderCount;
 
+  /**
+   * Number of threads used to analyze classes in parallel
+   *
+   * @parameter default-value=1
+   */
+  Integer threads;
+
+  /**
+   * Directory in which parsed classes and the indexes of jars are cached between builds
+   *
+   * @parameter
+   */
+  File cacheDirectory;
+
+  /**
+   * Megabytes of decoded method bodies kept in memory, the least recently used ones are
+   * decoded again when needed. 0 keeps them all. Parsed classes are not cached in the
+   * cacheDirectory then, only the indexes of jars are.
+   *
+   * @parameter default-value=0
+   */
+  Integer maxBodyMemory;
+
+  /**
+   * Operations interpreted for a method, including the methods it calls, before its analysis
+   * is cut off and its cost reported as truncated. 0 is no limit.
+   *
+   * @parameter default-value=0
+   */
+  Integer maxMethodOperations;
+
+  /**
+   * Calls interpreted for a method before its analysis is cut off. 0 is no limit.
+   *
+   * @parameter default-value=0
+   */
+  Integer maxMethodFrames;
+
+  /**
+   * Milliseconds spent on a method before its analysis is cut off. 0 is no limit.
+   *
+   * @parameter default-value=0
+   */
+  Integer maxMethodMillis;
+
+  /**
+   * Operations interpreted for all the methods of a class together. 0 is no limit.
+   *
+   * @parameter default-value=0
+   */
+  Integer maxClassOperations;
+
+  /**
+   * Calls interpreted for all the methods of a class together. 0 is no limit.
+   *
+   * @parameter default-value=0
+   */
+  Integer maxClassFrames;
+
+  /**
+   * Milliseconds spent on all the methods of a class together. 0 is no limit.
+   *
+   * @parameter default-value=0
+   */
+  Integer maxClassMillis;
+
   /**
    * Colon-delimited packages to whitelist
    *
@@ -174,6 +241,10 @@ public class TestabilityExplorerMojo extends AbstractMavenReport {
           "because it is a \"pom\" packaging", mavenProject.getName()));
       return;
     }
+    if (cacheDirectory != null && maxBodyMemory != null && maxBodyMemory > 0) {
+      getLog().warn("Parsed classes are not cached with maxBodyMemory set, only the "
+          + "indexes of jars are.");
+    }
     Guice.createInjector(new MavenConfigModule(this)).
         getInstance(JavaTestabilityRunner.class).
         run();
@@ -203,7 +274,12 @@ public class TestabilityExplorerMojo extends AbstractMavenReport {
     } catch (DependencyResolutionRequiredException e) {
       throw new RuntimeException(e);
     }
-    return new ClassPathFactory().createFromPaths(
+    return getClassPathFactory().createFromPaths(
         compileClasspathElements.toArray(new String[compileClasspathElements.size()]));
   }
+
+  ClassPathFactory getClassPathFactory() {
+    return new ClassPathFactory(cacheDirectory == null ? null
+        : new ClassPathIndexCache(new File(cacheDirectory, "classpath")));
+  }
 }
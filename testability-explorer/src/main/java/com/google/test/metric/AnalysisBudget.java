@@ -0,0 +1,110 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+/**
+ * Limits the work of the {@link TestabilityVisitor} on one method, or on all the methods of a
+ * class: the operations it interprets, the frames it creates and the time it takes. Once a
+ * budget runs out, the frames being interpreted are cut off, and the costs found so far are
+ * reported with their {@link MethodCost} marked as truncated. A limit of 0 is no limit.
+ */
+public class AnalysisBudget {
+
+  public static final AnalysisBudget UNLIMITED = new AnalysisBudget(0, 0, 0);
+
+  /**
+   * Operations interpreted between two looks at the clock.
+   */
+  private static final int OPERATIONS_PER_CLOCK_CHECK = 256;
+
+  private final long maxOperations;
+  private final long maxFrames;
+  private final long maxMillis;
+
+  public AnalysisBudget(long maxOperations, long maxFrames, long maxMillis) {
+    this.maxOperations = maxOperations;
+    this.maxFrames = maxFrames;
+    this.maxMillis = maxMillis;
+  }
+
+  /**
+   * Starts spending the budget, from now on.
+   *
+   * @param parent the meter of the budget this one is part of, which the work counts against
+   *     too, or {@code null}. The budget of a method is part of the budget of its class.
+   */
+  public Meter start(Meter parent) {
+    return new Meter(this, parent);
+  }
+
+  /**
+   * Counts the work done against an {@link AnalysisBudget}. Not thread safe, a class is
+   * computed by one thread.
+   */
+  public static class Meter {
+    private final AnalysisBudget budget;
+    private final Meter parent;
+    private final long deadline;
+    private long operations;
+    private long frames;
+    private boolean exhausted;
+
+    private Meter(AnalysisBudget budget, Meter parent) {
+      this.budget = budget;
+      this.parent = parent;
+      this.deadline = budget.maxMillis == 0 ? 0
+          : System.nanoTime() + budget.maxMillis * 1000000L;
+    }
+
+    /**
+     * Counts an operation which is about to be interpreted.
+     *
+     * @return whether the budget allows it, otherwise it is exhausted.
+     */
+    boolean countOperation() {
+      boolean allowed = parent == null || parent.countOperation();
+      operations++;
+      if (budget.maxOperations != 0 && operations > budget.maxOperations) {
+        exhausted = true;
+      }
+      if (deadline != 0 && operations % OPERATIONS_PER_CLOCK_CHECK == 0
+          && System.nanoTime() > deadline) {
+        exhausted = true;
+      }
+      return allowed && !exhausted;
+    }
+
+    /**
+     * Counts a new frame. The budget is exhausted once there are more frames than it allows.
+     */
+    void countFrame() {
+      if (parent != null) {
+        parent.countFrame();
+      }
+      frames++;
+      if (budget.maxFrames != 0 && frames > budget.maxFrames) {
+        exhausted = true;
+      }
+    }
+
+    /**
+     * @return whether this budget, or the budget it is part of, has run out.
+     */
+    public boolean isExhausted() {
+      return exhausted || (parent != null && parent.isExhausted());
+    }
+  }
+}
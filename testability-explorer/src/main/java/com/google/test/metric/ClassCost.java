@@ -71,6 +71,19 @@ public class ClassCost {
     return methods;
   }
 
+  /**
+   * @return whether the costs of some of the methods were found only in part, because an
+   *     {@link AnalysisBudget} ran out.
+   */
+  public boolean isTruncated() {
+    for (MethodCost methodCost : methods) {
+      if (methodCost.isTruncated()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   // TODO: delete
   public long getTotalComplexityCost() {
     long totalCost = 0;
@@ -114,6 +127,9 @@ public class ClassCost {
   public Map<String, Object> getAttributes() {
     HashMap<String, Object> map = new HashMap<String, Object>();
     map.put(CLASS_NAME, className);
+    if (isTruncated()) {
+      map.put(MethodCost.TRUNCATED_ATTRIBUTE, true);
+    }
     return map;
   }
 
@@ -0,0 +1,753 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.google.test.metric.method.Constant;
+import com.google.test.metric.method.op.turing.ArrayAssignment;
+import com.google.test.metric.method.op.turing.FieldAssignment;
+import com.google.test.metric.method.op.turing.LocalAssignment;
+import com.google.test.metric.method.op.turing.MethodInvocation;
+import com.google.test.metric.method.op.turing.Operation;
+import com.google.test.metric.method.op.turing.ReturnOperation;
+
+/**
+ * Keeps parsed {@link ClassInfo}s in a directory so that later runs do not have to decode
+ * the byte code again. Entries are keyed by a hash of the class file content and of the build
+ * of this tool (see {@link #analyzerVersion()}), so a changed class, or a class parsed by a
+ * changed parser, simply misses the cache and stale entries are never read.
+ * Entries which can not be read (truncated, corrupt, written by another version) are ignored
+ * and the class is parsed as if there was no cache.
+ * <p>
+ * References to other classes are stored by name and resolved through the repository when the
+ * entry is loaded, the same way the byte code parser does it.
+ * <p>
+ * A class is stored once all its method bodies are decoded, see
+ * {@link JavaClassRepository#bodiesDecoded(ClassInfo, byte[])}. Each body is stored on its
+ * own, and decoded from the entry the first time it is needed, as the byte code is.
+ */
+public class ClassInfoCache {
+
+  private static final int MAGIC = 0x54454343; // "TECC"
+  private static final int FORMAT_VERSION = 2;
+
+  private static final byte LOCAL_VARIABLE = 1;
+  private static final byte PARAMETER = 2;
+  private static final byte CONSTANT = 3;
+  private static final byte FIELD = 4;
+  private static final byte LOCAL_FIELD = 5;
+
+  private static final byte ARRAY_ASSIGNMENT = 1;
+  private static final byte FIELD_ASSIGNMENT = 2;
+  private static final byte LOCAL_ASSIGNMENT = 3;
+  private static final byte METHOD_INVOCATION = 4;
+  private static final byte RETURN = 5;
+
+  private final File directory;
+  private final String toolVersion;
+
+  public ClassInfoCache(File directory) {
+    this(directory, analyzerVersion());
+  }
+
+  /**
+   * @param analyzerVersion identifies the code which parses the classes; entries stored by
+   *     a cache with another version are never read.
+   */
+  ClassInfoCache(File directory, String analyzerVersion) {
+    this.directory = directory;
+    this.toolVersion = FORMAT_VERSION + ":" + analyzerVersion;
+  }
+
+  /**
+   * The implementation version alone does not tell builds apart, a development tree keeps
+   * the same version (or none) over many rebuilds. So the version includes the size and
+   * modification time of the jar this class was loaded from, or if it was loaded from a
+   * directory, a hash of all the class files in it.
+   */
+  static String analyzerVersion() {
+    Package pkg = ClassInfoCache.class.getPackage();
+    String version = pkg == null ? null : pkg.getImplementationVersion();
+    StringBuilder analyzerVersion = new StringBuilder(version == null ? "dev" : version);
+    try {
+      File location = new File(ClassInfoCache.class.getProtectionDomain().getCodeSource()
+          .getLocation().toURI());
+      if (location.isFile()) {
+        analyzerVersion.append(":").append(location.length())
+            .append(":").append(location.lastModified());
+      } else if (location.isDirectory()) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        hashClassFiles(location, "", digest);
+        analyzerVersion.append(":").append(toHex(digest.digest()));
+      }
+    } catch (Exception e) {
+      // No code source to tell builds apart (e.g. a custom class loader), the version has to do.
+    }
+    return analyzerVersion.toString();
+  }
+
+  private static void hashClassFiles(File directory, String path, MessageDigest digest)
+      throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files);
+    for (File file : files) {
+      String name = path + "/" + file.getName();
+      if (file.isDirectory()) {
+        hashClassFiles(file, name, digest);
+      } else if (name.endsWith(".class")) {
+        digest.update(name.getBytes("UTF-8"));
+        InputStream in = new FileInputStream(file);
+        try {
+          digest.update(readFully(in));
+        } finally {
+          in.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the cached class for {@code classBytes}, or {@code null} if there is no usable entry.
+   */
+  public ClassInfo load(byte[] classBytes, JavaClassRepository repository) {
+    byte[] key = key(classBytes);
+    byte[] payload = readEntry(fileFor(key), key);
+    if (payload == null) {
+      return null;
+    }
+    try {
+      return new Reader(payload, repository).readClass();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Thrown for a variable or an operation the cache does not know how to store.
+   */
+  private static class UnsupportedEntryException extends Exception {
+    UnsupportedEntryException(Object unsupported) {
+      super(unsupported.getClass().getName());
+    }
+  }
+
+  /**
+   * Writes {@code classInfo} to the cache. Failing to write the cache is not an error, the
+   * class will just be parsed again next time.
+   */
+  public void store(byte[] classBytes, ClassInfo classInfo) {
+    byte[] key = key(classBytes);
+    File file = fileFor(key);
+    if (file.exists()) {
+      return;
+    }
+    File temp = null;
+    try {
+      ByteArrayOutputStream payload = new ByteArrayOutputStream();
+      new Writer(payload).writeClass(classInfo);
+      byte[] bytes = payload.toByteArray();
+      CRC32 crc = new CRC32();
+      crc.update(bytes);
+
+      file.getParentFile().mkdirs();
+      temp = File.createTempFile("class", ".tmp", file.getParentFile());
+      DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.write(key);
+        out.writeLong(crc.getValue());
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      } finally {
+        out.close();
+      }
+      // Written under a temporary name so that concurrent runs never see half an entry.
+      if (temp.renameTo(file)) {
+        temp = null;
+      }
+    } catch (IOException e) {
+      // Not cached this time.
+    } catch (UnsupportedEntryException e) {
+      // A variable or operation this cache does not know about; parse this class every time.
+    } finally {
+      if (temp != null) {
+        temp.delete();
+      }
+    }
+  }
+
+  private byte[] readEntry(File file, byte[] key) {
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      DataInputStream in = new DataInputStream(new FileInputStream(file));
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+          return null;
+        }
+        byte[] storedKey = new byte[key.length];
+        in.readFully(storedKey);
+        if (!Arrays.equals(key, storedKey)) {
+          return null;
+        }
+        long checksum = in.readLong();
+        int length = in.readInt();
+        if (length < 0 || length > file.length()) {
+          return null;
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue() == checksum ? payload : null;
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private byte[] key(byte[] classBytes) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      digest.update(toolVersion.getBytes("UTF-8"));
+      digest.update(classBytes);
+      return digest.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private File fileFor(byte[] key) {
+    String hex = toHex(key);
+    return new File(new File(directory, hex.substring(0, 2)), hex.substring(2));
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+      hex.append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 1024));
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Writes a class, or the body of one of its methods. Each body is written by a writer of
+   * its own, so that it can be read without the rest of the entry.
+   */
+  private static class Writer {
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final Map<Variable, Integer> variables = new IdentityHashMap<Variable, Integer>();
+
+    Writer(OutputStream out) {
+      this.out = new DataOutputStream(out);
+    }
+
+    void writeClass(ClassInfo classInfo) throws IOException, UnsupportedEntryException {
+      writeString(classInfo.getName());
+      out.writeBoolean(classInfo.isInterface());
+      ClassInfo superClass = classInfo.getSuperClass();
+      writeString(superClass == null ? null : superClass.getName());
+      writeInt(classInfo.getInterfaces().size());
+      for (ClassInfo interfaze : classInfo.getInterfaces()) {
+        writeString(interfaze.getName());
+      }
+      writeString(classInfo.getFileName());
+      writeInt(classInfo.getFields().size());
+      for (FieldInfo field : classInfo.getFields()) {
+        writeString(field.getName());
+        writeType(field.getType());
+        out.writeBoolean(field.isFinal());
+        out.writeBoolean(field.isGlobal());
+        out.writeBoolean(field.isPrivate());
+      }
+      writeInt(classInfo.getMethods().size());
+      for (MethodInfo method : classInfo.getMethods()) {
+        writeMethod(method);
+      }
+      out.flush();
+    }
+
+    private void writeMethod(MethodInfo method) throws IOException, UnsupportedEntryException {
+      writeString(method.getName());
+      out.writeBoolean(method.isStatic());
+      writeInt(method.getVisibility().ordinal());
+      out.writeBoolean(method.isFinal());
+      out.writeBoolean(method.isConstructor() || method.isStaticConstructor());
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      new Writer(body).writeBody(method);
+      writeInt(body.size());
+      body.writeTo(out);
+    }
+
+    private void writeBody(MethodInfo method) throws IOException, UnsupportedEntryException {
+      writeInt(method.getStartingLineNumber());
+      writeInt(method.getLinesOfComplexity().size());
+      for (int line : method.getLinesOfComplexity()) {
+        writeInt(line);
+      }
+      writeVariable(method.getMethodThis());
+      writeInt(method.getParameters().size());
+      for (ParameterInfo parameter : method.getParameters()) {
+        writeVariable(parameter);
+      }
+      writeInt(method.getLocalVariables().size());
+      for (LocalVariableInfo local : method.getLocalVariables()) {
+        writeVariable(local);
+      }
+      writeInt(method.getOperations().size());
+      for (Operation operation : method.getOperations()) {
+        writeOperation(operation);
+      }
+      out.flush();
+    }
+
+    private void writeOperation(Operation operation)
+        throws IOException, UnsupportedEntryException {
+      if (operation instanceof ArrayAssignment) {
+        ArrayAssignment assignment = (ArrayAssignment) operation;
+        out.writeByte(ARRAY_ASSIGNMENT);
+        writeInt(operation.getLineNumber());
+        writeVariable(assignment.getArray());
+        writeVariable(assignment.getIndex());
+        writeVariable(assignment.getValue());
+      } else if (operation instanceof FieldAssignment) {
+        FieldAssignment assignment = (FieldAssignment) operation;
+        out.writeByte(FIELD_ASSIGNMENT);
+        writeInt(operation.getLineNumber());
+        writeVariable(assignment.getFieldInstance());
+        writeVariable(assignment.getField());
+        writeVariable(assignment.getValue());
+      } else if (operation instanceof LocalAssignment) {
+        LocalAssignment assignment = (LocalAssignment) operation;
+        out.writeByte(LOCAL_ASSIGNMENT);
+        writeInt(operation.getLineNumber());
+        writeVariable(assignment.getVariable());
+        writeVariable(assignment.getValue());
+      } else if (operation instanceof MethodInvocation) {
+        MethodInvocation invocation = (MethodInvocation) operation;
+        out.writeByte(METHOD_INVOCATION);
+        writeInt(operation.getLineNumber());
+        writeString(invocation.getOwner());
+        writeString(invocation.getName());
+        writeVariable(invocation.getMethodThis());
+        writeInt(invocation.getParameters().size());
+        for (Variable parameter : invocation.getParameters()) {
+          writeVariable(parameter);
+        }
+        writeVariable(invocation.getReturnVariable());
+      } else if (operation instanceof ReturnOperation) {
+        out.writeByte(RETURN);
+        writeInt(operation.getLineNumber());
+        writeVariable(((ReturnOperation) operation).getValue());
+      } else {
+        throw new UnsupportedEntryException(operation);
+      }
+    }
+
+    /**
+     * Variables are compared by identity during the analysis, so each one is written once per
+     * method and referred to by its index afterwards.
+     */
+    private void writeVariable(Variable variable) throws IOException, UnsupportedEntryException {
+      if (variable == null) {
+        writeInt(0);
+        return;
+      }
+      Integer index = variables.get(variable);
+      if (index != null) {
+        writeInt(index);
+        return;
+      }
+      if (variable instanceof LocalField) {
+        LocalField localField = (LocalField) variable;
+        writeInt(-1);
+        out.writeByte(LOCAL_FIELD);
+        writeVariable(localField.getInstance());
+        writeVariable(localField.getField());
+      } else {
+        writeInt(-1);
+        if (variable instanceof LocalVariableInfo) {
+          out.writeByte(LOCAL_VARIABLE);
+        } else if (variable instanceof ParameterInfo) {
+          out.writeByte(PARAMETER);
+        } else if (variable instanceof Constant) {
+          out.writeByte(CONSTANT);
+        } else if (variable instanceof FieldInfo) {
+          FieldInfo field = (FieldInfo) variable;
+          out.writeByte(FIELD);
+          writeString(field.getClassInfo().getName());
+          out.writeBoolean(field.isFinal());
+          out.writeBoolean(field.isGlobal());
+          out.writeBoolean(field.isPrivate());
+        } else {
+          throw new UnsupportedEntryException(variable);
+        }
+        writeString(variable.getName());
+        writeType(variable.getType());
+      }
+      variables.put(variable, variables.size() + 1);
+    }
+
+    private void writeType(Type type) throws IOException {
+      if (type == null) {
+        writeString(null);
+      } else {
+        writeString(type.getCode());
+        if (!type.isPrimitive()) {
+          writeString(type.toString());
+        }
+      }
+    }
+
+    private void writeString(String string) throws IOException {
+      if (string == null) {
+        writeInt(0);
+        return;
+      }
+      Integer index = strings.get(string);
+      if (index != null) {
+        writeInt(index);
+        return;
+      }
+      writeInt(-1);
+      out.writeUTF(string);
+      strings.put(string, strings.size() + 1);
+    }
+
+    /**
+     * Zig-zag encoded variable length int, most of the numbers written are small.
+     */
+    private void writeInt(int value) throws IOException {
+      int bits = (value << 1) ^ (value >> 31);
+      while ((bits & ~0x7F) != 0) {
+        out.writeByte((bits & 0x7F) | 0x80);
+        bits >>>= 7;
+      }
+      out.writeByte(bits);
+    }
+  }
+
+  /**
+   * Decodes the bodies of the methods of a class read from the cache, the first time each one
+   * is needed. Keeps the entry until then.
+   */
+  private static class CachedBodyDecoder implements MethodInfo.BodyDecoder {
+    private final byte[] payload;
+    private final JavaClassRepository repository;
+    private final ClassInfo classInfo;
+    /** The offset and length of each body which is not decoded yet, by method name. */
+    private final Map<String, int[]> bodies = new HashMap<String, int[]>();
+
+    CachedBodyDecoder(byte[] payload, JavaClassRepository repository, ClassInfo classInfo) {
+      this.payload = payload;
+      this.repository = repository;
+      this.classInfo = classInfo;
+    }
+
+    synchronized MethodInfo.BodyDecoder add(String method, int offset, int length) {
+      bodies.put(method, new int[] {offset, length});
+      return this;
+    }
+
+    public synchronized MethodInfo decode(MethodInfo method) {
+      if (method.hasBody()) {
+        // Decoded by another thread meanwhile.
+        return method;
+      }
+      int[] body = bodies.remove(method.getName());
+      MethodInfo decoded;
+      try {
+        decoded = new Reader(payload, body[0], body[1], repository, classInfo)
+            .readBody(method);
+      } catch (IOException e) {
+        // The entry was checked when it was loaded.
+        throw new IllegalStateException("Cached body of " + method + " can not be read", e);
+      }
+      method.setDecodedBody(decoded);
+      return decoded;
+    }
+  }
+
+  private static class Reader {
+    private final DataInputStream in;
+    private final byte[] payload;
+    private final int end;
+    private final JavaClassRepository repository;
+    private final List<String> strings = new ArrayList<String>();
+    private final List<Variable> variables = new ArrayList<Variable>();
+    private ClassInfo classInfo;
+
+    Reader(byte[] payload, JavaClassRepository repository) {
+      this(payload, 0, payload.length, repository, null);
+    }
+
+    Reader(byte[] payload, int offset, int length, JavaClassRepository repository,
+        ClassInfo classInfo) {
+      this.in = new DataInputStream(new ByteArrayInputStream(payload, offset, length));
+      this.payload = payload;
+      this.end = offset + length;
+      this.repository = repository;
+      this.classInfo = classInfo;
+    }
+
+    ClassInfo readClass() throws IOException {
+      String name = readString();
+      boolean isInterface = in.readBoolean();
+      String superName = readString();
+      ClassInfo superClass = superName == null ? null : repository.getClass(superName);
+      int interfaceCount = readInt();
+      List<ClassInfo> interfaces = new ArrayList<ClassInfo>(interfaceCount);
+      for (int i = 0; i < interfaceCount; i++) {
+        interfaces.add(repository.getClass(readString()));
+      }
+      classInfo = new ClassInfo(name, isInterface, superClass, interfaces, readString());
+      repository.addClass(classInfo);
+      int fieldCount = readInt();
+      for (int i = 0; i < fieldCount; i++) {
+        String fieldName = readString();
+        Type type = readType();
+        boolean isFinal = in.readBoolean();
+        boolean isGlobal = in.readBoolean();
+        boolean isPrivate = in.readBoolean();
+        classInfo.addField(new FieldInfo(classInfo, fieldName, type, isFinal, isGlobal,
+            isPrivate));
+      }
+      int methodCount = readInt();
+      CachedBodyDecoder bodies = new CachedBodyDecoder(payload, repository, classInfo);
+      for (int i = 0; i < methodCount; i++) {
+        classInfo.addMethod(readMethod(bodies));
+      }
+      return classInfo;
+    }
+
+    private MethodInfo readMethod(CachedBodyDecoder bodies) throws IOException {
+      String name = readString();
+      boolean isStatic = in.readBoolean();
+      int visibility = readInt();
+      if (visibility < 0 || visibility >= Visibility.values().length) {
+        throw new IOException("Bad visibility " + visibility);
+      }
+      boolean isFinal = in.readBoolean();
+      boolean isConstructor = in.readBoolean();
+      int length = readInt();
+      int offset = end - in.available();
+      if (length < 0 || length > in.available()) {
+        throw new IOException("Bad body length " + length);
+      }
+      in.skipBytes(length);
+      return new MethodInfo(classInfo, name, isStatic, Visibility.values()[visibility],
+          isFinal, isConstructor, bodies.add(name, offset, length));
+    }
+
+    /**
+     * @return a method with the signature of {@code method}, and its body.
+     */
+    MethodInfo readBody(MethodInfo method) throws IOException {
+      int startingLine = readInt();
+      int complexityCount = readInt();
+      List<Integer> linesOfComplexity = new ArrayList<Integer>(complexityCount);
+      for (int i = 0; i < complexityCount; i++) {
+        linesOfComplexity.add(readInt());
+      }
+      Variable methodThis = readVariable();
+      int parameterCount = readInt();
+      List<ParameterInfo> parameters = new ArrayList<ParameterInfo>(parameterCount);
+      for (int i = 0; i < parameterCount; i++) {
+        parameters.add((ParameterInfo) readVariable());
+      }
+      int localCount = readInt();
+      List<LocalVariableInfo> locals = new ArrayList<LocalVariableInfo>(localCount);
+      for (int i = 0; i < localCount; i++) {
+        locals.add((LocalVariableInfo) readVariable());
+      }
+      int operationCount = readInt();
+      List<Operation> operations = new ArrayList<Operation>(operationCount);
+      for (int i = 0; i < operationCount; i++) {
+        operations.add(readOperation());
+      }
+      return new MethodInfo(classInfo, method.getName(), startingLine, methodThis, parameters,
+          locals, method.getVisibility(), operations, method.isFinal(),
+          method.isConstructor() || method.isStaticConstructor(), linesOfComplexity);
+    }
+
+    private Operation readOperation() throws IOException {
+      byte kind = in.readByte();
+      int line = readInt();
+      switch (kind) {
+        case ARRAY_ASSIGNMENT:
+          return new ArrayAssignment(line, readVariable(), readVariable(), readVariable());
+        case FIELD_ASSIGNMENT:
+          return new FieldAssignment(line, readVariable(), (FieldInfo) readVariable(),
+              readVariable());
+        case LOCAL_ASSIGNMENT:
+          return new LocalAssignment(line, readVariable(), readVariable());
+        case METHOD_INVOCATION:
+          String owner = readString();
+          String name = readString();
+          Variable methodThis = readVariable();
+          int parameterCount = readInt();
+          List<Variable> parameters = new ArrayList<Variable>(parameterCount);
+          for (int i = 0; i < parameterCount; i++) {
+            parameters.add(readVariable());
+          }
+          return new MethodInvocation(line, owner, name, methodThis, parameters,
+              readVariable());
+        case RETURN:
+          return new ReturnOperation(line, readVariable());
+        default:
+          throw new IOException("Unknown operation " + kind);
+      }
+    }
+
+    private Variable readVariable() throws IOException {
+      int index = readInt();
+      if (index != -1) {
+        return variableAt(index);
+      }
+      Variable variable;
+      byte kind = in.readByte();
+      switch (kind) {
+        case LOCAL_VARIABLE:
+          variable = new LocalVariableInfo(readString(), readType());
+          break;
+        case PARAMETER:
+          variable = new ParameterInfo(readString(), readType());
+          break;
+        case CONSTANT:
+          variable = new Constant(readString(), readType());
+          break;
+        case FIELD:
+          String owner = readString();
+          boolean isFinal = in.readBoolean();
+          boolean isGlobal = in.readBoolean();
+          boolean isPrivate = in.readBoolean();
+          variable = readField(owner, readString(), readType(), isFinal, isGlobal, isPrivate);
+          break;
+        case LOCAL_FIELD:
+          Variable instance = readVariable();
+          variable = new LocalField(instance, (FieldInfo) readVariable());
+          break;
+        default:
+          throw new IOException("Unknown variable " + kind);
+      }
+      variables.add(variable);
+      return variable;
+    }
+
+    private Variable variableAt(int index) throws IOException {
+      if (index < 0 || index > variables.size()) {
+        throw new IOException("Bad variable index " + index);
+      }
+      return index == 0 ? null : variables.get(index - 1);
+    }
+
+    /**
+     * Fields are shared between all the methods which use them, so they are looked up in their
+     * class just like the byte code parser does. Fields which don't exist (the parser makes up
+     * "FAKE:" fields for those) are created again.
+     */
+    private FieldInfo readField(String owner, String name, Type type, boolean isFinal,
+        boolean isGlobal, boolean isPrivate) {
+      ClassInfo ownerClass = owner.equals(classInfo.getName()) ? classInfo
+          : repository.getClass(owner);
+      try {
+        return ownerClass.getField(name);
+      } catch (FieldNotFoundException e) {
+        return new FieldInfo(ownerClass, name, type, isFinal, isGlobal, isPrivate);
+      }
+    }
+
+    private Type readType() throws IOException {
+      String code = readString();
+      if (code == null) {
+        return null;
+      }
+      if (code.length() == 1) {
+        return JavaType.fromDesc(code);
+      }
+      int array = 0;
+      while (code.charAt(array) == '[') {
+        array++;
+      }
+      return new Type(array, readString(), code);
+    }
+
+    private String readString() throws IOException {
+      int index = readInt();
+      if (index == 0) {
+        return null;
+      }
+      if (index > 0) {
+        return strings.get(index - 1);
+      }
+      String string = in.readUTF();
+      strings.add(string);
+      return string;
+    }
+
+    private int readInt() throws IOException {
+      int bits = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        byte b = in.readByte();
+        bits |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return (bits >>> 1) ^ -(bits & 1);
+        }
+      }
+      throw new IOException("Malformed int");
+    }
+  }
+}
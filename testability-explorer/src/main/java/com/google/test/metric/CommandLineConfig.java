@@ -24,6 +24,7 @@ import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.Option;
 
+import java.io.File;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -99,6 +100,46 @@ public class CommandLineConfig {
   @Option(name = "-constructor", metaVar = "work in constructor multiplier", usage = "Additional multiplier on costs that are incurred in a constructor")
   double constructorMultiplier = 1;
 
+  @Option(name = "-threads", usage = "Number of threads used to analyze classes in parallel. "
+      + "The report is the same as for a single threaded run. Defaults to 1.")
+  int threads = 1;
+
+  @Option(name = "-cacheDir", usage = "Directory in which parsed classes are cached between runs. "
+      + "Unchanged classes and jars are then read from the cache instead of being parsed again.")
+  File cacheDir;
+
+  @Option(name = "-maxBodyMemory", usage = "Megabytes of decoded method bodies kept in memory. "
+      + "Once exceeded, the least recently used bodies are dropped and decoded again when "
+      + "needed. Can not be combined with -cacheDir. Defaults to 0, which keeps them all.")
+  int maxBodyMemory = 0;
+
+  @Option(name = "-maxMethodOperations", usage = "Operations interpreted for a method, including "
+      + "the methods it calls, before its analysis is cut off and its cost is reported as "
+      + "truncated. Defaults to 0, which is no limit.")
+  int maxMethodOperations = 0;
+
+  @Option(name = "-maxMethodFrames", usage = "Calls interpreted for a method before its "
+      + "analysis is cut off and its cost is reported as truncated. Defaults to 0, which is no "
+      + "limit.")
+  int maxMethodFrames = 0;
+
+  @Option(name = "-maxMethodMillis", usage = "Milliseconds spent on a method before its "
+      + "analysis is cut off and its cost is reported as truncated. Defaults to 0, which is no "
+      + "limit.")
+  int maxMethodMillis = 0;
+
+  @Option(name = "-maxClassOperations", usage = "Like -maxMethodOperations, for all the methods "
+      + "of a class together. Defaults to 0, which is no limit.")
+  int maxClassOperations = 0;
+
+  @Option(name = "-maxClassFrames", usage = "Like -maxMethodFrames, for all the methods of a "
+      + "class together. Defaults to 0, which is no limit.")
+  int maxClassFrames = 0;
+
+  @Option(name = "-maxClassMillis", usage = "Like -maxMethodMillis, for all the methods of a "
+      + "class together. Defaults to 0, which is no limit.")
+  int maxClassMillis = 0;
+
   @Argument(metaVar = "classes and packages to analyze", usage = "Classes or packages to analyze. "
       + "Matches any class starting with these.\n"
       + "Ex. com.example.analyze.these com.google.and.these.packages " + "com.google.AClass")
@@ -119,6 +160,23 @@ public class CommandLineConfig {
       throw new CmdLineException("You must supply either the -cp flag, " +
           "or the argument \"classes and packages to analyze\".");
     }
+    if (threads < 1) {
+      throw new CmdLineException("'-threads' must be at least 1, was " + threads + ".");
+    }
+    if (maxBodyMemory < 0) {
+      throw new CmdLineException("'-maxBodyMemory' can not be negative, was "
+          + maxBodyMemory + ".");
+    }
+    if (maxBodyMemory > 0 && cacheDir != null) {
+      // Cached classes keep all their bodies, which the budget could not evict.
+      throw new CmdLineException("'-maxBodyMemory' can not be combined with '-cacheDir'.");
+    }
+    checkNotNegative("-maxMethodOperations", maxMethodOperations);
+    checkNotNegative("-maxMethodFrames", maxMethodFrames);
+    checkNotNegative("-maxMethodMillis", maxMethodMillis);
+    checkNotNegative("-maxClassOperations", maxClassOperations);
+    checkNotNegative("-maxClassFrames", maxClassFrames);
+    checkNotNegative("-maxClassMillis", maxClassMillis);
     cp = (cp != null ? cp : System.getProperty("java.class.path", "."));
     if (entryList.isEmpty()) {
       entryList.add(".");
@@ -129,4 +187,10 @@ public class CommandLineConfig {
       throw new CmdLineException("Don't understand '-print' option '" + printer + "'");
     }
   }
+
+  private void checkNotNegative(String option, int value) throws CmdLineException {
+    if (value < 0) {
+      throw new CmdLineException("'" + option + "' can not be negative, was " + value + ".");
+    }
+  }
 }
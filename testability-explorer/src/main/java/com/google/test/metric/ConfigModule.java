@@ -4,6 +4,7 @@ package com.google.test.metric;
 
 import com.google.classpath.ClassPath;
 import com.google.classpath.ClassPathFactory;
+import com.google.classpath.ClassPathIndexCache;
 import com.google.inject.AbstractModule;
 import com.google.inject.BindingAnnotation;
 import com.google.inject.TypeLiteral;
@@ -14,6 +15,7 @@ import com.google.test.metric.report.ReportOptions;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 
+import java.io.File;
 import java.io.PrintStream;
 import java.lang.annotation.Retention;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
@@ -49,7 +51,10 @@ public class ConfigModule extends AbstractModule {
     try {
       parser.parseArgument(args);
       config.validate();
-      bind(ClassPath.class).toInstance(new ClassPathFactory().createFromPath(config.cp));
+      ClassPathIndexCache indexCache = config.cacheDir == null ? null
+          : new ClassPathIndexCache(new File(config.cacheDir, "classpath"));
+      bind(ClassPath.class).toInstance(
+          new ClassPathFactory(indexCache).createFromPath(config.cp));
       bind(ReportFormat.class).toInstance(config.format);      
     } catch (CmdLineException e) {
       err.println(e.getMessage() + "\n");
@@ -64,6 +69,13 @@ public class ConfigModule extends AbstractModule {
         config.maxMethodCount, config.maxLineCount, config.printDepth, config.minCost,
         config.srcFileLineUrl, config.srcFileUrl));
     bindConstant().annotatedWith(Names.named("printDepth")).to(config.printDepth);
+    bindConstant().annotatedWith(Names.named("threads")).to(config.threads);
+    bind(AnalysisBudget.class).annotatedWith(Names.named("methodBudget")).toInstance(
+        new AnalysisBudget(config.maxMethodOperations, config.maxMethodFrames,
+            config.maxMethodMillis));
+    bind(AnalysisBudget.class).annotatedWith(Names.named("classBudget")).toInstance(
+        new AnalysisBudget(config.maxClassOperations, config.maxClassFrames,
+            config.maxClassMillis));
     bind(new TypeLiteral<List<String>>() {}).toInstance(config.entryList);
 
     //TODO: install the appropriate language-specific module
@@ -37,4 +37,8 @@ public class FieldInfo extends Variable {
     return isPrivate;
   }
 
+  public ClassInfo getClassInfo() {
+    return classInfo;
+  }
+
 }
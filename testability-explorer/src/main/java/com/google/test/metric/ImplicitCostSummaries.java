@@ -0,0 +1,101 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Summaries of the implicit costs of the methods of one class: the costs of its static
+ * initializers, of its constructor and of its setters, which are added to most of its methods
+ * (see {@link MetricComputer#compute(ClassInfo)}). Each implicit cost is interpreted once,
+ * and then applied to the other methods of the class with the costs it recorded, where all the
+ * reads of its summary give the same answers again (see {@link SummaryRecorder}). Not thread
+ * safe, a class is computed by one thread.
+ */
+public class ImplicitCostSummaries {
+
+  /**
+   * Summaries kept for the same implicit method, for methods in different states.
+   */
+  private static final int MAX_VARIANTS = 4;
+
+  /**
+   * The summary of one implicit cost.
+   */
+  static class Summary {
+    /**
+     * What the implicit call read and wrote in the global variable state.
+     */
+    final MethodSummaries.Summary call;
+    /**
+     * The costs the implicit call added to the method.
+     */
+    final List<ViolationCost> costSources;
+    /**
+     * The costs the implicit call added to the methods it called, as far as their costs are
+     * recorded. A method called again later, even as another implicit cost, adds to the same
+     * {@link MethodCost}, so these are added to the {@link MethodCost}s of each method again.
+     */
+    final Map<MethodInfo, List<ViolationCost>> calledCostSources;
+    /**
+     * The methods of the {@link MethodCost}s which the costs refer to.
+     */
+    final Map<MethodCost, MethodInfo> methods;
+
+    Summary(MethodSummaries.Summary call, List<ViolationCost> costSources,
+        Map<MethodInfo, List<ViolationCost>> calledCostSources,
+        Map<MethodCost, MethodInfo> methods) {
+      this.call = call;
+      this.costSources = costSources;
+      this.calledCostSources = calledCostSources;
+      this.methods = methods;
+    }
+  }
+
+  private final Map<MethodInfo, List<Summary>> summaries = new HashMap<MethodInfo, List<Summary>>();
+
+  /**
+   * @return the summary of the implicit cost of the {@code implicitMethod}, which can be
+   *     applied to the state of the {@code recorder}, or {@code null}.
+   */
+  Summary find(MethodInfo implicitMethod, SummaryRecorder recorder,
+      Set<MethodInfo> alreadyVisited) {
+    List<Summary> variants = summaries.get(implicitMethod);
+    if (variants != null) {
+      for (Summary summary : variants) {
+        if (recorder.matches(summary.call, alreadyVisited)) {
+          return summary;
+        }
+      }
+    }
+    return null;
+  }
+
+  void add(MethodInfo implicitMethod, Summary summary) {
+    List<Summary> variants = summaries.get(implicitMethod);
+    if (variants == null) {
+      variants = new ArrayList<Summary>();
+      summaries.put(implicitMethod, variants);
+    }
+    if (variants.size() < MAX_VARIANTS) {
+      variants.add(summary);
+    }
+  }
+}
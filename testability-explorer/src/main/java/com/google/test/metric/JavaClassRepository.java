@@ -19,16 +19,86 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 
 import org.objectweb.asm.ClassReader;
 
 import com.google.classpath.ClassPath;
 import com.google.test.metric.asm.ClassInfoBuilderVisitor;
 
+/**
+ * Loads {@link ClassInfo}s from the class path. The repository can be shared between threads:
+ * each class is parsed only once, threads asking for a class which is being parsed by another
+ * thread wait for it to finish and get the same {@link ClassInfo} (or the same
+ * {@link ClassNotFoundException}).
+ * <p>
+ * Classes which are not found are remembered as well, so asking again for a missing class
+ * does not search the class path again.
+ */
 public class JavaClassRepository implements ClassRepository {
 
-  private final Map<String, ClassInfo> classes = new HashMap<String, ClassInfo>();
+  /**
+   * A class which is being (or has been) loaded. While the class is being parsed
+   * {@code partialClassInfo} holds the not yet complete class as soon as its super
+   * classes and interfaces are resolved (see {@link #addClass(ClassInfo)}). Only the
+   * loading thread, and threads it waits for, ever see it; other threads wait for the
+   * complete class.
+   */
+  private static class LoadingClass {
+    private final Thread loader = Thread.currentThread();
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private ClassInfo partialClassInfo;
+    private ClassInfo classInfo;
+    private RuntimeException failure;
+
+    void finish(ClassInfo classInfo, RuntimeException failure) {
+      this.classInfo = classInfo;
+      this.failure = failure;
+      loaded.countDown();
+    }
+
+    boolean isDone() {
+      return loaded.getCount() == 0;
+    }
+
+    void await() {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          loaded.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    ClassInfo get() {
+      if (failure != null) {
+        throw failure;
+      }
+      return classInfo;
+    }
+  }
+
+  private final ConcurrentMap<String, LoadingClass> classes =
+      new ConcurrentHashMap<String, LoadingClass>();
+  private final Map<Thread, LoadingClass> waitingThreads = new HashMap<Thread, LoadingClass>();
+  /**
+   * The resource each class was read from, without ".class". Nested classes are found with
+   * '$' in place of some of the '.'s, and which ones is only known after searching.
+   */
+  private final ConcurrentMap<String, String> classResources =
+      new ConcurrentHashMap<String, String>();
   private ClassPath classpathRoots;
+  private ClassInfoCache cache;
+  private WhiteList stubbedClasses;
+  private MethodBodyBudget methodBodyBudget;
 
   public JavaClassRepository() {
   }
@@ -37,6 +107,47 @@ public class JavaClassRepository implements ClassRepository {
     this.classpathRoots = classpathRoots;
   }
 
+  /**
+   * @param cache where parsed classes are kept between runs, or {@code null} for no cache.
+   */
+  public JavaClassRepository(ClassPath classpathRoots, ClassInfoCache cache) {
+    this.classpathRoots = classpathRoots;
+    this.cache = cache;
+  }
+
+  /**
+   * @param stubbedClasses classes whose code is never analyzed, or {@code null}. They are
+   *     loaded with their hierarchy, fields and method signatures only; their methods have
+   *     no operations.
+   */
+  public JavaClassRepository(ClassPath classpathRoots, ClassInfoCache cache,
+      WhiteList stubbedClasses) {
+    this.classpathRoots = classpathRoots;
+    this.cache = cache;
+    this.stubbedClasses = stubbedClasses;
+  }
+
+  /**
+   * @param methodBodyBudget if not {@code null}, the decoded method bodies are kept within
+   *     this budget, and decoded again after they are evicted. The class bytes are not kept
+   *     for that, they are read from the class path again. The {@code cache} is not used
+   *     then, as it restores classes with bodies which can not be evicted.
+   */
+  public JavaClassRepository(ClassPath classpathRoots, ClassInfoCache cache,
+      WhiteList stubbedClasses, MethodBodyBudget methodBodyBudget) {
+    this.classpathRoots = classpathRoots;
+    this.cache = methodBodyBudget == null ? cache : null;
+    this.stubbedClasses = stubbedClasses;
+    this.methodBodyBudget = methodBodyBudget;
+  }
+
+  /**
+   * @return the budget the method bodies are kept in, or {@code null} if they are all kept.
+   */
+  public MethodBodyBudget getMethodBodyBudget() {
+    return methodBodyBudget;
+  }
+
   public ClassInfo getClass(String name) {
     if (name.startsWith("[")) {
       return getClass(Object.class.getCanonicalName());
@@ -44,25 +155,167 @@ public class JavaClassRepository implements ClassRepository {
     if (name.contains("$") || name.contains("/")) {
       throw new IllegalStateException("Class name can not contain '$' or '/' in a name: " + name);
     }
-    ClassInfo classInfo = classes.get(name);
-    if (classInfo == null) {
-        try {
-          classInfo = parseClass(inputStreamForClass(name));
-        } catch (ArrayIndexOutOfBoundsException e) {
-          throw new ClassNotFoundException(name);
-        } catch (ClassNotFoundException e) {
-          throw new ClassNotFoundException(name, e);
+    LoadingClass loading = classes.get(name);
+    if (loading == null) {
+      LoadingClass newLoading = new LoadingClass();
+      loading = classes.putIfAbsent(name, newLoading);
+      if (loading == null) {
+        return load(name, newLoading);
+      }
+    }
+    if (loading.isDone()) {
+      return loading.get();
+    }
+    return await(name, loading);
+  }
+
+  private ClassInfo load(String name, LoadingClass loading) {
+    ClassInfo classInfo = null;
+    RuntimeException failure = null;
+    try {
+      classInfo = parse(name);
+      return classInfo;
+    } catch (RuntimeException e) {
+      failure = e;
+      throw e;
+    } finally {
+      if (classInfo == null) {
+        // Same as a serial load: a class which failed half way through its
+        // methods stays in the repository. A class which is not on the class
+        // path stays as well, failing each request the same way. Any other
+        // class which could not even be created is retried on the next request.
+        classInfo = loading.partialClassInfo;
+        if (classInfo == null) {
+          if (!(failure instanceof ClassNotFoundException)) {
+            classes.remove(name, loading);
+          }
+          if (failure == null) {
+            failure = new IllegalStateException("Loading of class '" + name + "' failed.");
+          }
+        } else {
+          failure = null;
+        }
+      }
+      loading.finish(classInfo, failure);
+    }
+  }
+
+  private ClassInfo parse(String name) {
+    try {
+      byte[] classBytes = readClassBytes(name);
+      if (stubbedClasses != null && stubbedClasses.isClassWhiteListed(name)) {
+        // Not cached, the same class may not be stubbed in the next run.
+        return parseClass(classBytes, true);
+      }
+      if (cache != null) {
+        ClassInfo cached = cache.load(classBytes, this);
+        if (cached != null) {
+          return cached;
         }
+      }
+      // Cached once its bodies are decoded, see bodiesDecoded.
+      return parseClass(classBytes, false);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new ClassNotFoundException(name);
+    } catch (ClassNotFoundException e) {
+      throw new ClassNotFoundException(name, e);
+    }
+  }
+
+  /**
+   * Waits for another thread to finish loading the class. Parsing a class recursively
+   * loads other classes (super classes, interfaces, owners of referenced fields), so
+   * the class may be loaded further up the stack of this thread, in which case the
+   * partially built class is returned, which is what a single threaded repository would do.
+   * If waiting would close a cycle of threads waiting on each other, the partially built
+   * class is returned as well: its loader waits, directly or through other threads, for this
+   * thread, so it does not touch the class until this thread is done with it. Every thread
+   * thus gets the one {@link ClassInfo} of each class.
+   */
+  private ClassInfo await(String name, LoadingClass loading) {
+    if (!startWaiting(loading)) {
+      return partialClassInfo(name, loading);
+    }
+    try {
+      loading.await();
+    } finally {
+      stopWaiting();
+    }
+    return loading.get();
+  }
+
+  /**
+   * @return the class which is being loaded further up the stack of this thread, or by a
+   *     thread waiting for this one.
+   * @throws IllegalStateException if the class is not created yet, because it is asked for
+   *     while its own super classes and interfaces are resolved.
+   */
+  private ClassInfo partialClassInfo(String name, LoadingClass loading) {
+    if (loading.isDone()) {
+      return loading.get();
+    }
+    if (loading.partialClassInfo == null) {
+      throw new IllegalStateException("Class '" + name + "' is its own super class or interface.");
+    }
+    return loading.partialClassInfo;
+  }
+
+  /**
+   * @return {@code false} if waiting for {@code loading} would never finish.
+   */
+  private boolean startWaiting(LoadingClass loading) {
+    Thread currentThread = Thread.currentThread();
+    synchronized (waitingThreads) {
+      LoadingClass next = loading;
+      while (next != null && !next.isDone()) {
+        if (next.loader == currentThread) {
+          return false;
+        }
+        next = waitingThreads.get(next.loader);
+      }
+      waitingThreads.put(currentThread, loading);
+      return true;
+    }
+  }
+
+  private void stopWaiting() {
+    synchronized (waitingThreads) {
+      waitingThreads.remove(Thread.currentThread());
+    }
+  }
+
+  /**
+   * Called by the {@link com.google.test.metric.asm.MethodBodyDecoder} of a class once all
+   * its method bodies are decoded, so that the next run finds them in the cache. A class is
+   * not cached before, which would decode all its bodies as soon as it is loaded.
+   */
+  public void bodiesDecoded(ClassInfo classInfo, byte[] classBytes) {
+    if (cache != null) {
+      cache.store(classBytes, classInfo);
     }
-    return classInfo;
   }
 
-  private InputStream inputStreamForClass(String clazzName) {
+  /**
+   * @return the byte code of the class, read from the class path again.
+   * @throws ClassNotFoundException if the class is not on the class path.
+   */
+  public byte[] readClassBytes(String clazzName) {
+    String known = knownResource(clazzName);
+    if (known != null) {
+      byte[] classBytes = getResource(known + ".class");
+      if (classBytes != null) {
+        classResources.put(clazzName, known);
+        return classBytes;
+      }
+    }
     String resource = clazzName.replace(".", "/");
-    InputStream classBytes = null;
+    byte[] classBytes = null;
     while (true) {
-      classBytes = getResource(resource + ".class");
+      if (!resource.equals(known)) {
+        classBytes = getResource(resource + ".class");
+      }
       if (classBytes != null) {
+        classResources.put(clazzName, resource);
         return classBytes;
       }
       int index = resource.lastIndexOf('/');
@@ -73,29 +326,52 @@ public class JavaClassRepository implements ClassRepository {
     }
   }
 
-  private InputStream getResource(String classResource) {
-    InputStream classBytes = null;
+  /**
+   * @return the resource the class was read from before, or for a class nested in a class
+   *     which was read before, the resource it would be in. {@code null} if neither is known.
+   */
+  private String knownResource(String clazzName) {
+    String resource = classResources.get(clazzName);
+    int index = clazzName.lastIndexOf('.');
+    if (resource == null && index != -1) {
+      String outer = classResources.get(clazzName.substring(0, index));
+      if (outer != null) {
+        resource = outer + "$" + clazzName.substring(index + 1);
+      }
+    }
+    return resource;
+  }
+
+  private byte[] getResource(String classResource) {
     if (classpathRoots != null) {
-      classBytes = classpathRoots.getResourceAsStream(classResource);
+      byte[] classBytes = classpathRoots.getResourceBytes(classResource);
+      if (classBytes != null) {
+        return classBytes;
+      }
     }
+    //Perhaps it is a JDK Class
+    InputStream classBytes = ClassLoader.getSystemResourceAsStream(classResource);
     if (classBytes == null) {
-      //Perhaps it is a JDK Class
-      classBytes = ClassLoader.getSystemResourceAsStream(classResource);
+      return null;
     }
-    return classBytes;
-  }
-
-  private ClassInfo parseClass(InputStream classBytes) {
     try {
-      ClassReader classReader = new ClassReader(classBytes);
-      ClassInfoBuilderVisitor visitor = new ClassInfoBuilderVisitor(this);
-      classReader.accept(visitor, 0);
-      return visitor.getClassInfo();
+      try {
+        return ClassInfoCache.readFully(classBytes);
+      } finally {
+        classBytes.close();
+      }
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
+  private ClassInfo parseClass(byte[] classBytes, boolean stub) {
+    ClassReader classReader = new ClassReader(classBytes);
+    ClassInfoBuilderVisitor visitor = new ClassInfoBuilderVisitor(this, classReader, stub);
+    classReader.accept(visitor, 0);
+    return visitor.getClassInfo();
+  }
+
   /* (non-Javadoc)
    * @see com.google.test.metric.ClassRepository#addClass(com.google.test.metric.ClassInfo)
    */
@@ -104,7 +380,14 @@ public class JavaClassRepository implements ClassRepository {
     if (name.contains("$") || name.contains("/")) {
       throw new IllegalStateException();
     }
-    classes.put(name, classInfo);
+    LoadingClass loading = classes.get(name);
+    if (loading == null || loading.isDone()) {
+      LoadingClass loaded = new LoadingClass();
+      loaded.finish(classInfo, null);
+      classes.put(name, loaded);
+    } else if (loading.loader == Thread.currentThread()) {
+      loading.partialClassInfo = classInfo;
+    }
   }
 
 }
@@ -16,20 +16,27 @@
 package com.google.test.metric;
 
 import com.google.classpath.ClassPath;
+import com.google.classpath.MergedResourceIterator;
 import com.google.classpath.RegExpResourceFilter;
 import static com.google.classpath.RegExpResourceFilter.ANY;
 import static com.google.classpath.RegExpResourceFilter.ENDS_WITH_CLASS;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import com.google.test.metric.ConfigModule.Error;
 import com.google.test.metric.report.ReportGenerator;
 import com.google.test.metric.report.issues.IssuesReporter;
 
 import java.io.IOException;
 import java.io.PrintStream;
-import static java.util.Arrays.asList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Has the responsibility of kicking off the analysis. A programmatic interface into using
@@ -46,12 +53,14 @@ public class JavaTestabilityRunner implements Runnable {
   private final List<String> entryList;
   private final WhiteList whiteList;
   private final PrintStream err;
+  private final int threads;
 
   @Inject
   public JavaTestabilityRunner(ReportGenerator report,
                                ClassPath classPath, ClassRepository classRepository,
                                MetricComputer computer, List<String> entryList, 
-                               WhiteList whiteList, @Error PrintStream err) {
+                               WhiteList whiteList, @Error PrintStream err,
+                               @Named("threads") int threads) {
     this.report = report;
     this.classPath = classPath;
     this.classRepository = classRepository;
@@ -59,10 +68,18 @@ public class JavaTestabilityRunner implements Runnable {
     this.entryList = entryList;
     this.whiteList = whiteList;
     this.err = err;
+    this.threads = threads;
+  }
+
+  public JavaTestabilityRunner(ReportGenerator report,
+                               ClassPath classPath, ClassRepository classRepository,
+                               MetricComputer computer, List<String> entryList,
+                               WhiteList whiteList, PrintStream err) {
+    this(report, classPath, classRepository, computer, entryList, whiteList, err, 1);
   }
 
   public AnalysisModel generateModel(IssuesReporter issuesReporter) {
-    SortedSet<String> classNames = new TreeSet<>();
+    List<Iterator<String>> resources = new ArrayList<Iterator<String>>();
     RegExpResourceFilter resourceFilter = new RegExpResourceFilter(ANY, ENDS_WITH_CLASS);
     AnalysisModel model = new AnalysisModel(issuesReporter);
     for (String entry : entryList) {
@@ -70,25 +87,102 @@ public class JavaTestabilityRunner implements Runnable {
         entry = "";
       }
       // TODO(jonathan) seems too complicated, replacing "." with "/" using the resource filter, then right below replace all "/" with "."
-      classNames.addAll(asList(classPath.findResources(entry.replace(".", "/"), resourceFilter)));
+      resources.add(classPath.iterateResources(entry.replace(".", "/"), resourceFilter));
     }
-    for (String resource : classNames) {
-      String className = resource.replace(".class", "").replace("/", ".").replace('$', '.');
-      try {
-        if (!whiteList.isClassWhiteListed(className)) {
-          ClassInfo clazz = classRepository.getClass(className);
-          ClassCost classCost = computer.compute(clazz);
-          model.addClassCost(classCost);
+    // The classes are analyzed while the class path is still being walked.
+    Iterator<String> classNames = new MergedResourceIterator(resources);
+    if (threads > 1) {
+      analyzeInParallel(classNames, model);
+    } else {
+      while (classNames.hasNext()) {
+        String className = toClassName(classNames.next());
+        try {
+          addClassCost(model, analyze(className));
+        } catch (ClassNotFoundException e) {
+          warnClassNotFound(className, e);
         }
-      } catch (ClassNotFoundException e) {
-        err.println("WARNING: can not analyze class '" + className
-            + "' since class '" + e.getClassName() + "' was not found. Chain: " + e.getMessage());
       }
     }
+    computer.getMissingClasses().printSummary(err);
 
     return model;
   }
 
+  /**
+   * Fans the classes out over a work-stealing pool. Each class gets its own
+   * {@link MetricComputer} invocation (and thus its own {@link TestabilityVisitor}),
+   * only the {@link ClassRepository} is shared. The results are collected in the
+   * sorted order of the class names, so the model is the same as for the serial run.
+   * At most a few classes per thread are pending, so walking the class path does not
+   * run far ahead of the analysis.
+   */
+  private void analyzeInParallel(Iterator<String> classNames, AnalysisModel model) {
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      Deque<String> names = new ArrayDeque<String>();
+      Deque<Future<ClassCost>> costs = new ArrayDeque<Future<ClassCost>>();
+      while (classNames.hasNext()) {
+        final String className = toClassName(classNames.next());
+        names.add(className);
+        costs.add(pool.submit(new Callable<ClassCost>() {
+          public ClassCost call() {
+            return analyze(className);
+          }
+        }));
+        while (costs.size() > 4 * threads || (!costs.isEmpty() && costs.peek().isDone())) {
+          addClassCost(model, names.poll(), costs.poll());
+        }
+      }
+      while (!costs.isEmpty()) {
+        addClassCost(model, names.poll(), costs.poll());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private void addClassCost(AnalysisModel model, String className, Future<ClassCost> cost)
+      throws InterruptedException {
+    try {
+      addClassCost(model, cost.get());
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ClassNotFoundException) {
+        warnClassNotFound(className, (ClassNotFoundException) e.getCause());
+      } else {
+        throw new RuntimeException(e.getCause());
+      }
+    }
+  }
+
+  /**
+   * @return the cost of the class, or {@code null} if the class is whitelisted.
+   */
+  private ClassCost analyze(String className) {
+    if (whiteList.isClassWhiteListed(className)) {
+      return null;
+    }
+    ClassInfo clazz = classRepository.getClass(className);
+    return computer.compute(clazz);
+  }
+
+  private void addClassCost(AnalysisModel model, ClassCost classCost) {
+    if (classCost != null) {
+      model.addClassCost(classCost);
+    }
+  }
+
+  private void warnClassNotFound(String className, ClassNotFoundException e) {
+    err.println("WARNING: can not analyze class '" + className
+        + "' since class '" + e.getClassName() + "' was not found. Chain: " + e.getMessage());
+  }
+
+  private String toClassName(String resource) {
+    return resource.replace(".class", "").replace("/", ".").replace('$', '.');
+  }
+
   public void renderReport(AnalysisModel model) {
     try {
       report.printHeader();
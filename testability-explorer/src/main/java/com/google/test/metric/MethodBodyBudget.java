@@ -0,0 +1,101 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps the decoded method bodies within a memory budget. The classes, fields and method
+ * signatures always stay in memory, but once the bodies take more than the budget the least
+ * recently used ones are evicted, and decoded again when they are needed. The class bytes are
+ * not kept for that, they are read from the class path again.
+ * <p>
+ * The recently used bodies are found with the clock algorithm: each use of a body marks its
+ * method, and the methods are kept in a ring. Evicting goes round the ring, a marked method
+ * is unmarked and skipped, the first unmarked one is evicted. Sizes are estimates, the
+ * budget is about the operations and not an exact heap size.
+ * <p>
+ * The summaries of the calls to the methods (see {@link MethodSummaries}) count against the
+ * budget too. They are not evicted, so they may only take half of it.
+ */
+public class MethodBodyBudget {
+
+  private final long maxBytes;
+  private final Deque<MethodInfo> decoded = new ArrayDeque<MethodInfo>();
+  private long usedBytes;
+  private long summaryBytes;
+  private long evictions;
+
+  public MethodBodyBudget(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Counts a newly decoded body, and evicts other bodies until the budget is kept.
+   */
+  synchronized void add(MethodInfo method, long size) {
+    decoded.add(method);
+    usedBytes += size;
+    evict();
+  }
+
+  /**
+   * Counts a summary of a call, and evicts bodies until the budget is kept.
+   *
+   * @return {@code false} if the summary is not to be kept, because the summaries take half
+   *     of the budget already.
+   */
+  synchronized boolean addSummary(long size) {
+    if (summaryBytes + size > maxBytes / 2) {
+      return false;
+    }
+    summaryBytes += size;
+    usedBytes += size;
+    evict();
+    return true;
+  }
+
+  private void evict() {
+    while (usedBytes > maxBytes && decoded.size() > 1) {
+      MethodInfo candidate = decoded.poll();
+      if (candidate.clearReferenced()) {
+        decoded.add(candidate);
+      } else {
+        usedBytes -= candidate.evictBody();
+        evictions++;
+      }
+    }
+  }
+
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /**
+   * @return the part of the used bytes which the summaries take.
+   */
+  public synchronized long getSummaryBytes() {
+    return summaryBytes;
+  }
+
+  /**
+   * @return the number of bodies evicted so far.
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+}
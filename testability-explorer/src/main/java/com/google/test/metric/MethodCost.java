@@ -31,6 +31,7 @@ public class MethodCost {
   private final boolean staticInit;
 
   private final List<ViolationCost> costSources = new ArrayList<ViolationCost>();
+  private boolean truncated;
 
   public boolean isConstructor() {
     return constructor;
@@ -57,6 +58,7 @@ public class MethodCost {
   private final Cost constructorDependentCost = new Cost();
 
   public static final String METHOD_NAME_ATTRIBUTE = "name";
+  public static final String TRUNCATED_ATTRIBUTE = "truncated";
 
   /**
    * @param className
@@ -93,9 +95,21 @@ public class MethodCost {
     costSources.add(costSource);
   }
 
+  /**
+   * Marks the costs as found only in part, because the {@link AnalysisBudget} of the method
+   * ran out.
+   */
+  public void markTruncated() {
+    truncated = true;
+  }
+
+  public boolean isTruncated() {
+    return truncated;
+  }
+
   @Override
   public String toString() {
-    return getMethodName() + toCostsString();
+    return getMethodName() + toCostsString() + (truncated ? " (truncated)" : "");
   }
 
   public String toCostsString() {
@@ -140,6 +154,9 @@ public class MethodCost {
     Map<String, Object> map = getTotalCost().getAttributes();
     map.put("line", lineNumber);
     map.put(METHOD_NAME_ATTRIBUTE, methodName);
+    if (truncated) {
+      map.put(TRUNCATED_ATTRIBUTE, true);
+    }
     return map;
   }
 
@@ -30,16 +30,63 @@ import java.util.List;
 
 public class MethodInfo implements Comparable<MethodInfo> {
 
+  /**
+   * Decodes the body of a method which was loaded with its signature only.
+   */
+  public interface BodyDecoder {
+    /**
+     * Decodes the body of {@code method} and hands it to
+     * {@link MethodInfo#setDecodedBody(MethodInfo)}. The bodies of other methods of the same
+     * class may be decoded and handed over along with it.
+     *
+     * @return a method with the same signature as {@code method}, and its body. If the body
+     *     of {@code method} was decoded before ({@link MethodInfo#wasDecoded()}), the new body
+     *     must use the variables of {@code method}.
+     */
+    MethodInfo decode(MethodInfo method);
+  }
+
+  /**
+   * The part of a method which is dropped when its body is evicted, see
+   * {@link MethodBodyBudget}.
+   */
+  private static class Body {
+    /** A rough guess of the bytes an operation and the variables and constants it creates take. */
+    private static final int OPERATION_SIZE = 96;
+
+    final List<Operation> operations;
+    final List<Integer> linesOfComplexity;
+
+    Body(List<Operation> operations, List<Integer> linesOfComplexity) {
+      this.operations = operations;
+      this.linesOfComplexity = linesOfComplexity;
+    }
+
+    long estimateSize() {
+      return OPERATION_SIZE * (operations.size() + 1) + 16 * linesOfComplexity.size();
+    }
+  }
+
   private final ClassInfo classInfo;
   private final String name;
-  private final Variable methodThis;
-  private final List<ParameterInfo> parameters;
-  private final List<LocalVariableInfo> localVariables;
-  private final List<Integer> linesOfComplexity;
+  private Variable methodThis;
+  private List<ParameterInfo> parameters;
+  private List<LocalVariableInfo> localVariables;
   private final Visibility visibility;
-  private final List<Operation> operations;
-  private final int startingLineNumber;
+  private volatile Body body;
+  private int startingLineNumber;
   private final boolean isFinal;
+  private final boolean isStatic;
+  /** Dropped once the body is decoded, unless the body can be evicted. */
+  private volatile BodyDecoder bodyDecoder;
+  private final MethodBodyBudget bodyBudget;
+  /** Set once the variables and starting line are known, they are kept when evicting. */
+  private volatile boolean decoded;
+  /**
+   * Set on every use of the body and cleared by the {@link MethodBodyBudget}. Not volatile:
+   * a use which is missed by a racing eviction only makes the eviction less accurate.
+   */
+  private boolean referenced;
 
   private Predicate<? super MethodInfo> notSelf = new Predicate<MethodInfo>() {
     public boolean apply(@Nullable MethodInfo methodInfo) {
@@ -60,10 +107,129 @@ public class MethodInfo implements Comparable<MethodInfo> {
     this.parameters = parameters;
     this.localVariables = localVariables;
     this.isConstructor = isConstructor;
-    this.linesOfComplexity = linesOfComplexity;
     this.visibility = visibility;
-    this.operations = operations;
+    this.body = new Body(operations, linesOfComplexity);
+    this.isFinal = isFinal;
+    this.isStatic = methodThis == null;
+    this.bodyDecoder = null;
+    this.bodyBudget = null;
+    this.decoded = true;
+  }
+
+  /**
+   * Creates a method whose body (variables, operations, line numbers and complexity)
+   * is decoded by {@code bodyDecoder} the first time any of it is asked for.
+   */
+  public MethodInfo(ClassInfo classInfo, String methodName, boolean isStatic,
+      Visibility visibility, boolean isFinal, boolean isConstructor, BodyDecoder bodyDecoder) {
+    this(classInfo, methodName, isStatic, visibility, isFinal, isConstructor, bodyDecoder, null);
+  }
+
+  /**
+   * @param bodyBudget if not {@code null}, the decoded body counts against this budget and
+   *     is evicted and decoded again when the budget needs the memory.
+   */
+  public MethodInfo(ClassInfo classInfo, String methodName, boolean isStatic,
+      Visibility visibility, boolean isFinal, boolean isConstructor, BodyDecoder bodyDecoder,
+      MethodBodyBudget bodyBudget) {
+    this.classInfo = classInfo;
+    this.name = methodName;
+    this.isStatic = isStatic;
+    this.visibility = visibility;
     this.isFinal = isFinal;
+    this.isConstructor = isConstructor;
+    this.bodyDecoder = bodyDecoder;
+    this.bodyBudget = bodyBudget;
+  }
+
+  /**
+   * @return {@code true} if the variables of the method are known, which they are from the
+   *     first time the body is decoded on, even if the body is evicted later.
+   */
+  public boolean wasDecoded() {
+    return decoded;
+  }
+
+  private void decodeVariables() {
+    if (!decoded) {
+      getBody();
+    }
+  }
+
+  /**
+   * @return the body, which stays valid for the caller even if it is evicted meanwhile.
+   */
+  private Body getBody() {
+    // Marked before decoding, so that the budget does not evict the body it is decoded for.
+    referenced = true;
+    // Read before the body: the decoder is only dropped after the body is set.
+    BodyDecoder decoder = bodyDecoder;
+    Body current = body;
+    if (current == null) {
+      current = decoder.decode(this).getBody();
+    }
+    return current;
+  }
+
+  /**
+   * @return {@code true} if the body is decoded, and not evicted since.
+   */
+  public boolean hasBody() {
+    return body != null;
+  }
+
+  /**
+   * Takes the body of {@code decodedMethod}, which the {@link BodyDecoder} of this method
+   * decoded, and the first time also its variables and starting line. Called by the decoder
+   * only, which decodes one method of a class at a time.
+   */
+  public void setDecodedBody(MethodInfo decodedMethod) {
+    if (!decoded) {
+      startingLineNumber = decodedMethod.getStartingLineNumber();
+      methodThis = decodedMethod.getMethodThis();
+      parameters = decodedMethod.getParameters();
+      localVariables = decodedMethod.getLocalVariables();
+      decoded = true;
+    }
+    Body current = decodedMethod.getBody();
+    body = current;
+    if (bodyBudget != null) {
+      bodyBudget.add(this, current.estimateSize());
+    } else {
+      // Never evicted, so never decoded again.
+      bodyDecoder = null;
+    }
+  }
+
+  /**
+   * Drops the operations of a method which can decode them again. Callers which got the
+   * operations before keep them, and a later call decodes them again with the same variables.
+   *
+   * @return the estimated number of bytes freed.
+   */
+  long evictBody() {
+    Body current = body;
+    if (current == null || bodyDecoder == null) {
+      return 0;
+    }
+    body = null;
+    return current.estimateSize();
+  }
+
+  /**
+   * @return the budget the body counts against, or {@code null}.
+   */
+  MethodBodyBudget getBodyBudget() {
+    return bodyBudget;
+  }
+
+  /**
+   * @return {@code true} if the body was used since the last call.
+   */
+  boolean clearReferenced() {
+    boolean wasReferenced = referenced;
+    referenced = false;
+    return wasReferenced;
   }
 
   @Override
@@ -76,10 +242,12 @@ public class MethodInfo implements Comparable<MethodInfo> {
   }
 
   public List<ParameterInfo> getParameters() {
+    decodeVariables();
     return parameters;
   }
 
   public List<LocalVariableInfo> getLocalVariables() {
+    decodeVariables();
     return localVariables;
   }
 
@@ -92,15 +260,19 @@ public class MethodInfo implements Comparable<MethodInfo> {
   }
 
   public List<Operation> getOperations() {
-    return unmodifiableList(operations);
+    return unmodifiableList(getBody().operations);
   }
 
   public boolean isStatic() {
-    return methodThis == null;
+    return isStatic;
   }
 
   public boolean isInstance() {
-    return methodThis != null;
+    return !isStatic;
+  }
+
+  public boolean isFinal() {
+    return isFinal;
   }
 
   public boolean canOverride() {
@@ -109,6 +281,7 @@ public class MethodInfo implements Comparable<MethodInfo> {
   }
 
   public Variable getMethodThis() {
+    decodeVariables();
     return methodThis;
   }
 
@@ -121,6 +294,7 @@ public class MethodInfo implements Comparable<MethodInfo> {
    * line - see MethodVisitorBuilder for where it comes from.
    */
   public int getStartingLineNumber() {
+    decodeVariables();
     return startingLineNumber;
   }
 
@@ -158,7 +332,7 @@ public class MethodInfo implements Comparable<MethodInfo> {
   }
 
   public List<Integer> getLinesOfComplexity() {
-    return linesOfComplexity;
+    return getBody().linesOfComplexity;
   }
 
   public boolean isPrivate() {
@@ -173,22 +347,22 @@ public class MethodInfo implements Comparable<MethodInfo> {
   public MethodInfo copyWithNoOperations(ClassInfo parent) {
     List<Operation> operations = Collections.emptyList();
     List<Integer> linesOfComplexity = Collections.emptyList();
-    return new MethodInfo(parent, name, startingLineNumber, methodThis,
-        parameters, localVariables, visibility, operations, isFinal,
+    return new MethodInfo(parent, name, getStartingLineNumber(), getMethodThis(),
+        getParameters(), getLocalVariables(), visibility, operations, isFinal,
         isConstructor, linesOfComplexity);
   }
 
   public MethodInfo copyWithNoDirectCost(ClassInfo parent) {
     List<Integer> linesOfComplexity = Collections.emptyList();
-    return new MethodInfo(parent, name, startingLineNumber, methodThis,
-        parameters, localVariables, visibility, operations, isFinal,
+    return new MethodInfo(parent, name, getStartingLineNumber(), getMethodThis(),
+        getParameters(), getLocalVariables(), visibility, getOperations(), isFinal,
         isConstructor, linesOfComplexity);
   }
 
   public MethodInfo copyWithoutInvocation(ClassInfo parent, String invokedClassName,
                                           String invokedMethodName) {
     List<Operation> operationsWithoutInvocation = Lists.newLinkedList();
-    for (Operation operation : operations) {
+    for (Operation operation : getOperations()) {
       if (operation instanceof MethodInvocation) {
         if (((MethodInvocation) operation).equals(invokedClassName, invokedMethodName)) {
           continue;
@@ -196,9 +370,9 @@ public class MethodInfo implements Comparable<MethodInfo> {
       }
       operationsWithoutInvocation.add(operation);
     }
-    return new MethodInfo(parent, name, startingLineNumber, methodThis,
-        parameters, localVariables, visibility, operationsWithoutInvocation, isFinal,
-        isConstructor, linesOfComplexity);
+    return new MethodInfo(parent, name, getStartingLineNumber(), getMethodThis(),
+        getParameters(), getLocalVariables(), visibility, operationsWithoutInvocation, isFinal,
+        isConstructor, getLinesOfComplexity());
   }
 
   @Override
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Summaries of the calls to methods which can not be overridden, so that a method which is
+ * called from many places is interpreted once instead of at every call. A summary is kept for
+ * a method and the injectability and globality of its receiver and arguments, and is shared
+ * by all the computations of a {@link MetricComputer}. Can be shared between threads.
+ * <p>
+ * The cost of a call also depends on the global variable state and on the methods already
+ * visited, and the call changes them. So a summary keeps a log of what the call read and wrote
+ * there (see {@link SummaryRecorder}). It is only used where all of its reads give the same
+ * answers again, and then its writes are applied, so the costs are the same as if the method
+ * was interpreted again. The summaries of calls below the print depth are kept, the calls
+ * whose costs are recorded in detail are always interpreted.
+ * <p>
+ * The summaries refer to methods and fields, which stay in memory anyway, but not to the
+ * variables of the bodies they were interpreted from, which may be evicted (see {@link
+ * SummaryRecorder#finishRecording(int, Cost, boolean, boolean, boolean)}). Where the bodies of
+ * the methods are kept within a {@link MethodBodyBudget}, their summaries count against it.
+ */
+public class MethodSummaries {
+
+  /**
+   * Summaries with longer logs are not kept.
+   */
+  static final int MAX_EVENTS = 1 << 14;
+  /**
+   * Once the logs of all the summaries are this long, no more summaries are kept.
+   */
+  static final long MAX_TOTAL_EVENTS = 1 << 23;
+  /**
+   * Summaries kept for the same method and signature, for calls in different states.
+   */
+  private static final int MAX_VARIANTS = 4;
+  /**
+   * The estimated size of a summary without its log, and of each event of the log.
+   */
+  private static final int SUMMARY_SIZE = 128;
+  private static final int EVENT_SIZE = 16;
+
+  /**
+   * The summary of one call, which can be applied again where {@link
+   * SummaryRecorder#matches(Summary, Set)}.
+   */
+  static class Summary {
+    final byte[] kinds;
+    final Object[] subjects;
+    private final Cost cost;
+    /**
+     * How the return value was assigned to the variable of the caller.
+     */
+    final boolean returnInjectable;
+    final boolean returnGlobal;
+    final boolean returnGlobalCost;
+
+    Summary(byte[] kinds, Object[] subjects, Cost cost, boolean returnInjectable,
+        boolean returnGlobal, boolean returnGlobalCost) {
+      this.kinds = kinds;
+      this.subjects = subjects;
+      this.cost = cost;
+      this.returnInjectable = returnInjectable;
+      this.returnGlobal = returnGlobal;
+      this.returnGlobalCost = returnGlobalCost;
+    }
+
+    Cost getCost() {
+      return cost.copy();
+    }
+
+    long estimateSize() {
+      return SUMMARY_SIZE + EVENT_SIZE * kinds.length;
+    }
+  }
+
+  private static class Key {
+    private final MethodInfo method;
+    private final byte[] signature;
+    private final int hashCode;
+
+    Key(MethodInfo method, byte[] signature) {
+      this.method = method;
+      this.signature = signature;
+      this.hashCode = 31 * method.hashCode() + Arrays.hashCode(signature);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return method.equals(other.method) && Arrays.equals(signature, other.signature);
+    }
+  }
+
+  private final ConcurrentMap<Key, Summary[]> summaries =
+      new ConcurrentHashMap<Key, Summary[]>();
+  private final AtomicLong totalEvents = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @return the summary of calling {@code method} with the {@code signature}, which can be
+   *     applied to the state of the {@code recorder}, or {@code null}.
+   */
+  Summary find(MethodInfo method, byte[] signature, SummaryRecorder recorder,
+      Set<MethodInfo> alreadyVisited) {
+    Summary[] variants = summaries.get(new Key(method, signature));
+    if (variants != null) {
+      for (Summary summary : variants) {
+        if (recorder.matches(summary, alreadyVisited)) {
+          hits.incrementAndGet();
+          return summary;
+        }
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  void add(MethodInfo method, byte[] signature, Summary summary) {
+    int events = summary.kinds.length;
+    if (events > MAX_EVENTS || totalEvents.get() + events > MAX_TOTAL_EVENTS) {
+      return;
+    }
+    Key key = new Key(method, signature);
+    Summary[] variants = summaries.get(key);
+    if (variants != null && variants.length >= MAX_VARIANTS) {
+      return;
+    }
+    // Counted before it is added: one which loses a race for the last variant stays counted.
+    MethodBodyBudget budget = method.getBodyBudget();
+    if (budget != null && !budget.addSummary(summary.estimateSize())) {
+      return;
+    }
+    while (variants == null || variants.length < MAX_VARIANTS) {
+      Summary[] added;
+      if (variants == null) {
+        added = new Summary[] {summary};
+        if (summaries.putIfAbsent(key, added) == null) {
+          totalEvents.addAndGet(events);
+          return;
+        }
+      } else {
+        added = Arrays.copyOf(variants, variants.length + 1);
+        added[variants.length] = summary;
+        if (summaries.replace(key, variants, added)) {
+          totalEvents.addAndGet(events);
+          return;
+        }
+      }
+      variants = summaries.get(key);
+    }
+  }
+
+  /**
+   * @return the number of calls which were summarized already.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of calls which had to be interpreted.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+}
@@ -34,14 +34,46 @@ public class MetricComputer {
   private final PrintStream err;
   private final WhiteList whitelist;
   private final int recordingDepth;
+  private final AnalysisBudget methodBudget;
+  private final AnalysisBudget classBudget;
+  private final MissingClasses missingClasses = new MissingClasses();
+  private final MethodSummaries methodSummaries = new MethodSummaries();
 
+  public MetricComputer(ClassRepository classRepository, PrintStream err,
+      WhiteList whitelist, int recordingDepth) {
+    this(classRepository, err, whitelist, recordingDepth, AnalysisBudget.UNLIMITED,
+        AnalysisBudget.UNLIMITED);
+  }
+
+  /**
+   * @param methodBudget the work allowed on each method, after which its cost is truncated.
+   * @param classBudget the work allowed on all the methods of a class together.
+   */
   @Inject
   public MetricComputer(ClassRepository classRepository, @Error PrintStream err,
-      WhiteList whitelist, @Named("printDepth") int recordingDepth) {
+      WhiteList whitelist, @Named("printDepth") int recordingDepth,
+      @Named("methodBudget") AnalysisBudget methodBudget,
+      @Named("classBudget") AnalysisBudget classBudget) {
     this.classRepository = classRepository;
     this.err = err;
     this.whitelist = whitelist;
     this.recordingDepth = recordingDepth;
+    this.methodBudget = methodBudget;
+    this.classBudget = classBudget;
+  }
+
+  /**
+   * @return the classes which were referenced but not found by all the computations so far.
+   */
+  public MissingClasses getMissingClasses() {
+    return missingClasses;
+  }
+
+  /**
+   * @return the summaries of the method calls, which are shared by all the computations.
+   */
+  public MethodSummaries getMethodSummaries() {
+    return methodSummaries;
   }
 
   public ClassCost compute(String name) {
@@ -52,14 +84,24 @@ public class MetricComputer {
    * Computing the ClassCost for a ClassInfo involves tallying up all the MethodCosts contained
    * in the class. Then an overall cost is calculated, based on the {@code CostModel} the metric
    * computer is using.
+   * <p>
+   * The implicit costs of the class, which most of its methods share, are summarized the first
+   * time they are applied to a method, and then applied to the other methods from their
+   * summaries (see {@link ImplicitCostSummaries}).
+   * <p>
+   * Each method is computed within the method budget, and all of them together within the
+   * class budget. Once the class budget runs out, the methods left are still reported, with
+   * truncated costs.
    *
    * @param clazz to compute the metric for.
    * @return classCost
    */
   public ClassCost compute(ClassInfo clazz) {
     List<MethodCost> methods = new ArrayList<MethodCost>();
+    ImplicitCostSummaries implicitCosts = new ImplicitCostSummaries();
+    AnalysisBudget.Meter classMeter = classBudget.start(null);
     for (MethodInfo method : clazz.getMethods()) {
-      methods.add(compute(method));
+      methods.add(compute(method, implicitCosts, methodBudget.start(classMeter)));
     }
     return new ClassCost(clazz.getName(), methods);
   }
@@ -80,12 +122,18 @@ public class MetricComputer {
    * MethodCost is guaranteed to have already been linked (sealed for adding additional costs).
    */
   public MethodCost compute(MethodInfo method) {
-    TestabilityVisitor visitor = new TestabilityVisitor(classRepository, new VariableState(), err, whitelist);
+    return compute(method, null, methodBudget.start(null));
+  }
+
+  private MethodCost compute(MethodInfo method, ImplicitCostSummaries implicitCosts,
+      AnalysisBudget.Meter meter) {
+    TestabilityVisitor visitor = new TestabilityVisitor(classRepository, new VariableState(), err,
+        missingClasses, methodSummaries, whitelist, meter);
     TestabilityVisitor.CostRecordingFrame frame = visitor.createFrame(method, recordingDepth);
-    addStaticInitializationCost(method, frame);
+    addStaticInitializationCost(method, frame, implicitCosts);
     if (!method.isStatic() && !method.isConstructor()) {
-      addConstructorCost(method, frame);
-      addSetterInjection(method, frame);
+      addConstructorCost(method, frame, implicitCosts);
+      addSetterInjection(method, frame, implicitCosts);
     }
     addFieldCost(method, frame);
     return frame.applyMethodOperations();
@@ -95,19 +143,21 @@ public class MetricComputer {
 
   /** Goes through all methods and adds an implicit cost for those beginning with "set" (assuming
    * to test the {@code baseMethod}'s class, you need to be able to call the setters for initialization.  */
-  private void addSetterInjection(MethodInfo baseMethod, CostRecordingFrame frame) {
+  private void addSetterInjection(MethodInfo baseMethod, CostRecordingFrame frame,
+      ImplicitCostSummaries implicitCosts) {
     for (MethodInfo setter : baseMethod.getSiblingSetters()) {
-      frame.applyImplicitCost(setter, IMPLICIT_SETTER);
+      frame.applyImplicitCost(setter, IMPLICIT_SETTER, implicitCosts);
     }
   }
 
   /** Adds an implicit cost to all non-static methods for calling the constructor. (Because to test
    * any instance method, you must be able to instantiate the class.) Also marks parameters
    * injectable for the constructor with the most non-primitive parameters. */
-  private void addConstructorCost(MethodInfo method, CostRecordingFrame frame) {
+  private void addConstructorCost(MethodInfo method, CostRecordingFrame frame,
+      ImplicitCostSummaries implicitCosts) {
     MethodInfo constructor = method.getClassInfo().getConstructorWithMostNonPrimitiveParameters();
     if (constructor != null) {
-      frame.applyImplicitCost(constructor, IMPLICIT_CONSTRUCTOR);
+      frame.applyImplicitCost(constructor, IMPLICIT_CONSTRUCTOR, implicitCosts);
     }
   }
 
@@ -122,13 +172,14 @@ public class MetricComputer {
   }
 
    /** Includes the cost of all static initialization blocks, as well as static field assignments. */
-  private void addStaticInitializationCost(MethodInfo baseMethod, CostRecordingFrame frame) {
+  private void addStaticInitializationCost(MethodInfo baseMethod, CostRecordingFrame frame,
+      ImplicitCostSummaries implicitCosts) {
     if (baseMethod.isStaticConstructor()) {
       return;
     }
     for (MethodInfo method : baseMethod.getClassInfo().getMethods()) {
       if (method.isStaticConstructor()) {
-        frame.applyImplicitCost(method, IMPLICIT_STATIC_INIT);
+        frame.applyImplicitCost(method, IMPLICIT_STATIC_INIT, implicitCosts);
       }
     }
   }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the references to classes which are not on the class path, so that each missing
+ * class is warned about once while analyzing and with its count in a summary at the end.
+ * Can be shared between threads.
+ */
+public class MissingClasses {
+
+  private final Map<String, Integer> counts = new TreeMap<String, Integer>();
+
+  /**
+   * @return {@code true} the first time {@code className} is added.
+   */
+  public synchronized boolean add(String className) {
+    Integer count = counts.get(className);
+    counts.put(className, count == null ? 1 : count + 1);
+    return count == null;
+  }
+
+  public synchronized int getCount(String className) {
+    Integer count = counts.get(className);
+    return count == null ? 0 : count;
+  }
+
+  public synchronized boolean isEmpty() {
+    return counts.isEmpty();
+  }
+
+  public synchronized void printSummary(PrintStream err) {
+    if (counts.isEmpty()) {
+      return;
+    }
+    err.println("WARNING: " + counts.size() + " classes were not found:");
+    for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+      int count = entry.getValue();
+      err.println("  " + entry.getKey() + " (" + count
+          + (count == 1 ? " reference)" : " references)"));
+    }
+  }
+}
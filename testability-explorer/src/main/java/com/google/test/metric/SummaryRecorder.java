@@ -0,0 +1,377 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.test.metric.MethodSummaries.Summary;
+import com.google.test.metric.TestabilityVisitor.Frame;
+
+/**
+ * The global variable state of one computation, which logs what the calls being summarized
+ * read and write in it, and in the methods already visited, for the {@link MethodSummaries}.
+ * <p>
+ * All the calls being summarized share one log: a call records from where the log was when it
+ * started to where it is when it ends, and the calls nested in it record their parts of the
+ * same log. Nothing is logged while no call is being summarized.
+ * <p>
+ * A {@link LocalField} is created each time a field is read through an instance, so the ones
+ * a call logs are only known to that call and to the calls nested in it. Their writes change
+ * nothing for the rest of the computation, and replaying a summary only logs them.
+ */
+public class SummaryRecorder extends VariableState {
+
+  private static final byte GLOBAL = 0;
+  private static final byte NOT_GLOBAL = 1;
+  private static final byte INJECTABLE = 2;
+  private static final byte NOT_INJECTABLE = 3;
+  private static final byte VISITED = 4;
+  private static final byte NOT_VISITED = 5;
+  private static final byte SET_GLOBAL = 6;
+  private static final byte SET_INJECTABLE = 7;
+  private static final byte VISIT = 8;
+  private static final byte CLASS_NOT_FOUND = 9;
+  private static final byte WARNING = 10;
+  /**
+   * The longest log of a call which is summarized, with the calls nested in it already
+   * replaced by their summaries. The summary is kept if it is at most
+   * {@link MethodSummaries#MAX_EVENTS} long. A longer log is not summarized at all, or every
+   * call of a deep call chain would summarize it again. So a summary is lost if summarizing
+   * would have cut its log from more than this down to {@code MAX_EVENTS}.
+   */
+  static final int MAX_RECORDED_EVENTS = MethodSummaries.MAX_EVENTS;
+
+  private final VariableState globals;
+  private final MethodSummaries summaries;
+  private byte[] kinds = new byte[64];
+  private Object[] subjects = new Object[64];
+  private int size;
+  private int recordings;
+
+  SummaryRecorder(VariableState globals, MethodSummaries summaries) {
+    this.globals = globals;
+    this.summaries = summaries;
+  }
+
+  MethodSummaries getSummaries() {
+    return summaries;
+  }
+
+  @Override
+  boolean isGlobal(Variable var) {
+    boolean global = globals.isGlobal(var);
+    if (isField(var)) {
+      log(global ? GLOBAL : NOT_GLOBAL, var);
+    }
+    return global;
+  }
+
+  @Override
+  boolean isInjectable(Variable var) {
+    boolean injectable = globals.isInjectable(var);
+    if (isField(var)) {
+      log(injectable ? INJECTABLE : NOT_INJECTABLE, var);
+    }
+    return injectable;
+  }
+
+  /**
+   * Only fields are set global or injectable in the global state (see {@link
+   * LocalVariableState}), so the answers for the other variables never change, and their reads
+   * are not logged.
+   */
+  private static boolean isField(Variable var) {
+    return var instanceof LocalField || var instanceof FieldInfo;
+  }
+
+  @Override
+  void setGlobal(Variable var) {
+    globals.setGlobal(var);
+    log(SET_GLOBAL, var);
+  }
+
+  @Override
+  void setInjectable(Variable var) {
+    globals.setInjectable(var);
+    log(SET_INJECTABLE, var);
+  }
+
+  boolean isVisited(Set<MethodInfo> alreadyVisited, MethodInfo method) {
+    boolean visited = alreadyVisited.contains(method);
+    log(visited ? VISITED : NOT_VISITED, method);
+    return visited;
+  }
+
+  void visit(Set<MethodInfo> alreadyVisited, MethodInfo method) {
+    alreadyVisited.add(method);
+    log(VISIT, method);
+  }
+
+  void classNotFound(String className) {
+    log(CLASS_NOT_FOUND, className);
+  }
+
+  void warning(String message) {
+    log(WARNING, message);
+  }
+
+  private void log(byte kind, Object subject) {
+    if (recordings == 0 || subject == null) {
+      return;
+    }
+    if (size == kinds.length) {
+      kinds = Arrays.copyOf(kinds, size * 2);
+      subjects = Arrays.copyOf(subjects, size * 2);
+    }
+    kinds[size] = kind;
+    subjects[size++] = subject;
+  }
+
+  /**
+   * @return where the log of the new recording starts.
+   */
+  int startRecording() {
+    recordings++;
+    return size;
+  }
+
+  /**
+   * Ends a recording which did not complete. What it logged is still part of the recordings
+   * it is nested in.
+   */
+  void abortRecording() {
+    if (--recordings == 0) {
+      size = 0;
+    }
+  }
+
+  /**
+   * Ends the recording started at {@code start}, and keeps its summary. Reads which can not
+   * give a new answer and writes which are done already are left out of the summary. A log
+   * longer than {@link #MAX_RECORDED_EVENTS} is not even summarized.
+   */
+  Summary finishRecording(int start, MethodInfo method, byte[] signature, Cost cost,
+      boolean returnInjectable, boolean returnGlobal, boolean returnGlobalCost) {
+    if (size - start > MAX_RECORDED_EVENTS) {
+      if (--recordings == 0) {
+        size = 0;
+      }
+      return new Summary(new byte[0], new Object[0], cost, returnInjectable, returnGlobal,
+          returnGlobalCost);
+    }
+    Summary summary = finishRecording(start, cost, returnInjectable, returnGlobal,
+        returnGlobalCost);
+    summaries.add(method, signature, summary);
+    return summary;
+  }
+
+  /**
+   * Ends the recording started at {@code start} like {@link #finishRecording(int, MethodInfo,
+   * byte[], Cost, boolean, boolean, boolean)} does, but leaves it to the caller to keep its
+   * summary.
+   * <p>
+   * The log of the recording is replaced by its summary, which the recordings it is nested in
+   * summarize the same way, as the events left out change nothing for them either. So a
+   * deep call chain is not summarized over and over again from its whole log.
+   * <p>
+   * The summary has copies of the local fields of the log, which keep only their field and
+   * the local fields they were read through, so that it does not hold on to the variables of
+   * the method bodies.
+   */
+  Summary finishRecording(int start, Cost cost, boolean returnInjectable, boolean returnGlobal,
+      boolean returnGlobalCost) {
+    // For each subject, the answer of its last read and the writes done, one bit per kind.
+    Map<Object, Integer> seen = new HashMap<Object, Integer>(2 * (size - start));
+    int summaryEnd = start;
+    for (int i = start; i < size; i++) {
+      byte kind = kinds[i];
+      Object subject = subjects[i];
+      int mask = pruneMask(kind);
+      boolean keep = true;
+      if (mask != 0) {
+        Integer before = seen.get(subject);
+        int bits = before == null ? 0 : before;
+        // A read is left out if the last read gave the same answer, a write if it was done.
+        keep = (bits & mask) != 1 << kind;
+        if (keep) {
+          seen.put(subject, bits & ~mask | 1 << kind);
+        }
+      }
+      if (keep) {
+        kinds[summaryEnd] = kind;
+        subjects[summaryEnd++] = subject;
+      }
+    }
+    Object[] summarySubjects = Arrays.copyOfRange(subjects, start, summaryEnd);
+    Map<LocalField, LocalField> copies = null;
+    for (int i = 0; i < summarySubjects.length; i++) {
+      if (summarySubjects[i] instanceof LocalField) {
+        if (copies == null) {
+          copies = new IdentityHashMap<LocalField, LocalField>();
+        }
+        summarySubjects[i] = copy((LocalField) summarySubjects[i], copies);
+      }
+    }
+    Summary summary = new Summary(Arrays.copyOfRange(kinds, start, summaryEnd),
+        summarySubjects, cost, returnInjectable, returnGlobal, returnGlobalCost);
+    Arrays.fill(subjects, summaryEnd, size, null);
+    size = --recordings == 0 ? 0 : summaryEnd;
+    return summary;
+  }
+
+  /**
+   * @return the copy of the {@code field} in {@code copies}, which is made the first time.
+   *     Only the global state is read through its instance, which only holds fields.
+   */
+  private static LocalField copy(LocalField field, Map<LocalField, LocalField> copies) {
+    LocalField copy = copies.get(field);
+    if (copy == null) {
+      Variable instance = field.getInstance();
+      if (instance instanceof LocalField) {
+        instance = copy((LocalField) instance, copies);
+      } else if (!(instance instanceof FieldInfo)) {
+        instance = null;
+      }
+      copy = new LocalField(instance, field.getField());
+      copies.put(field, copy);
+    }
+    return copy;
+  }
+
+  /**
+   * @return the bits of the kinds which the {@code kind} of event is left out of a summary
+   *     after, 0 if it is always kept.
+   */
+  private static int pruneMask(byte kind) {
+    switch (kind) {
+      case GLOBAL:
+      case NOT_GLOBAL:
+        return 1 << GLOBAL | 1 << NOT_GLOBAL;
+      case INJECTABLE:
+      case NOT_INJECTABLE:
+        return 1 << INJECTABLE | 1 << NOT_INJECTABLE;
+      case VISITED:
+      case NOT_VISITED:
+        return 1 << VISITED | 1 << NOT_VISITED;
+      case SET_GLOBAL:
+      case SET_INJECTABLE:
+      case VISIT:
+        return 1 << kind;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * @return whether every read of the {@code summary} gives the same answer now, given the
+   *     writes of the summary before it.
+   */
+  boolean matches(Summary summary, Set<MethodInfo> alreadyVisited) {
+    Set<Variable> setGlobals = Collections.emptySet();
+    Set<Variable> setInjectables = Collections.emptySet();
+    Set<Object> visits = Collections.emptySet();
+    for (int i = 0; i < summary.kinds.length; i++) {
+      Object subject = summary.subjects[i];
+      switch (summary.kinds[i]) {
+        case GLOBAL:
+        case NOT_GLOBAL:
+          if (globals.isGlobal((Variable) subject, setGlobals) != (summary.kinds[i] == GLOBAL)) {
+            return false;
+          }
+          break;
+        case INJECTABLE:
+        case NOT_INJECTABLE:
+          if (globals.isInjectable((Variable) subject, setInjectables)
+              != (summary.kinds[i] == INJECTABLE)) {
+            return false;
+          }
+          break;
+        case VISITED:
+        case NOT_VISITED:
+          boolean visited = alreadyVisited.contains(subject) || visits.contains(subject);
+          if (visited != (summary.kinds[i] == VISITED)) {
+            return false;
+          }
+          break;
+        case SET_GLOBAL:
+          setGlobals = added(setGlobals, (Variable) subject);
+          break;
+        case SET_INJECTABLE:
+          setInjectables = added(setInjectables, (Variable) subject);
+          break;
+        case VISIT:
+          visits = added(visits, subject);
+          break;
+        default:
+      }
+    }
+    return true;
+  }
+
+  private static <T> Set<T> added(Set<T> set, T element) {
+    Set<T> added = set.isEmpty() ? new HashSet<T>() : set;
+    added.add(element);
+    return added;
+  }
+
+  /**
+   * Applies the writes and warnings of the {@code summary}, and logs its reads, as if the
+   * call was interpreted by the {@code frame} again.
+   */
+  void replay(Summary summary, Set<MethodInfo> alreadyVisited, Frame frame) {
+    for (int i = 0; i < summary.kinds.length; i++) {
+      Object subject = summary.subjects[i];
+      switch (summary.kinds[i]) {
+        case SET_GLOBAL:
+          if (subject instanceof LocalField) {
+            log(SET_GLOBAL, subject);
+          } else {
+            setGlobal((Variable) subject);
+          }
+          break;
+        case SET_INJECTABLE:
+          if (subject instanceof LocalField) {
+            log(SET_INJECTABLE, subject);
+          } else {
+            setInjectable((Variable) subject);
+          }
+          break;
+        case VISIT:
+          visit(alreadyVisited, (MethodInfo) subject);
+          break;
+        case CLASS_NOT_FOUND:
+          frame.classNotFound((String) subject);
+          break;
+        case WARNING:
+          frame.warn((String) subject);
+          break;
+        default:
+          log(summary.kinds[i], subject);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return globals.toString();
+  }
+}
@@ -2,6 +2,8 @@
 
 package com.google.test.metric;
 
+import java.io.File;
+
 import com.google.classpath.ClassPath;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
@@ -21,7 +23,12 @@ public class TestabilityModule extends AbstractModule {
     bind(ReportGenerator.class).toProvider(ReportGeneratorProvider.class);
   }
 
-  @Provides ClassRepository getClassRepo(ClassPath classPath) {
-    return new JavaClassRepository(classPath);
+  @Provides ClassRepository getClassRepo(ClassPath classPath, CommandLineConfig config,
+      WhiteList whiteList) {
+    File cacheDir = config.cacheDir;
+    return new JavaClassRepository(classPath,
+        cacheDir == null ? null : new ClassInfoCache(cacheDir), whiteList,
+        config.maxBodyMemory == 0 ? null
+            : new MethodBodyBudget(config.maxBodyMemory * 1024L * 1024L));
   }
 }
@@ -20,6 +20,8 @@ import com.google.test.metric.method.Constant;
 import com.google.test.metric.method.op.turing.Operation;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -34,22 +36,29 @@ public class TestabilityVisitor {
     private final Map<MethodInfo, MethodCost> methodCosts;
     private final int remainingDepth;
 
-    public CostRecordingFrame(PrintStream err, ClassRepository classRepository,
-        ParentFrame parentFrame, WhiteList whitelist,
-        VariableState globalVariables, Map<MethodInfo, MethodCost> methodCosts,
-        Set<MethodInfo> alreadyVisited, MethodInfo method, int remainingDepth) {
-      super(err, classRepository, parentFrame, whitelist, globalVariables,
-          alreadyVisited, method);
+    public CostRecordingFrame(PrintStream err, MissingClasses missingClasses,
+        ClassRepository classRepository, ParentFrame parentFrame, WhiteList whitelist,
+        VariableState globalVariables, SummaryRecorder recorder, AnalysisBudget.Meter meter,
+        Map<MethodInfo, MethodCost> methodCosts, Set<MethodInfo> alreadyVisited,
+        MethodInfo method, int remainingDepth) {
+      super(err, missingClasses, classRepository, parentFrame, whitelist, globalVariables,
+          recorder, meter, alreadyVisited, method);
       this.methodCosts = methodCosts;
       this.remainingDepth = remainingDepth;
       this.methodCost = getMethodCostCache(method);
     }
 
-    public CostRecordingFrame(PrintStream err, ClassRepository classRepository,
-        WhiteList whitelist, VariableState globalVariables, MethodInfo method,
-        int remainingDepth) {
-      this(err, classRepository, new ParentFrame(globalVariables), whitelist,
-          globalVariables, new HashMap<MethodInfo, MethodCost>(),
+    /**
+     * @param recorder the global variables as recorded for the method summaries, or
+     *     {@code null} if calls are not summarized.
+     * @param meter what the interpretation spends of its {@link AnalysisBudget}.
+     */
+    public CostRecordingFrame(PrintStream err, MissingClasses missingClasses,
+        ClassRepository classRepository, WhiteList whitelist,
+        VariableState globalVariables, SummaryRecorder recorder, AnalysisBudget.Meter meter,
+        MethodInfo method, int remainingDepth) {
+      this(err, missingClasses, classRepository, new ParentFrame(globalVariables), whitelist,
+          globalVariables, recorder, meter, new HashMap<MethodInfo, MethodCost>(),
           new HashSet<MethodInfo>(), method, remainingDepth);
     }
 
@@ -147,9 +156,79 @@ public class TestabilityVisitor {
      * @return
      */
     public void applyImplicitCost(MethodInfo implicitMethod, Reason reason) {
+      applyImplicitCost(implicitMethod, reason, null);
+    }
+
+    /**
+     * Applies an implicit cost like {@link #applyImplicitCost(MethodInfo, Reason)} does,
+     * through the {@code implicitCosts} of the class: the {@code implicitMethod} is only
+     * interpreted if there is no summary of it which applies here, and then it is summarized.
+     *
+     * @param implicitCosts where the implicit costs of the class are summarized, or
+     *     {@code null}. They are not summarized either if the calls are not.
+     */
+    public void applyImplicitCost(MethodInfo implicitMethod, Reason reason,
+        ImplicitCostSummaries implicitCosts) {
       if (whitelist != null && whitelist.isClassWhiteListed(implicitMethod.getClassInfo().getName())) {
         return;
       }
+      if (recorder == null || implicitCosts == null) {
+        recordImplicitCall(implicitMethod, reason);
+        return;
+      }
+      ImplicitCostSummaries.Summary summary =
+          implicitCosts.find(implicitMethod, recorder, alreadyVisited);
+      if (summary != null) {
+        // The variables of the implicit method are not set injectable here, only the call
+        // reads them.
+        recorder.replay(summary.call, alreadyVisited, this);
+        addCostSources(methodCost, summary.costSources, summary.methods);
+        for (Map.Entry<MethodInfo, List<ViolationCost>> called
+            : summary.calledCostSources.entrySet()) {
+          addCostSources(getMethodCostCache(called.getKey()), called.getValue(), summary.methods);
+        }
+        return;
+      }
+      Map<MethodCost, Integer> costSourceCounts = new HashMap<MethodCost, Integer>();
+      for (MethodCost cost : methodCosts.values()) {
+        costSourceCounts.put(cost, cost.getViolationCosts().size());
+      }
+      int start = recorder.startRecording();
+      boolean recorded = false;
+      try {
+        recordImplicitCall(implicitMethod, reason);
+        List<ViolationCost> costSources = null;
+        Map<MethodInfo, List<ViolationCost>> calledCostSources =
+            new HashMap<MethodInfo, List<ViolationCost>>();
+        Map<MethodCost, MethodInfo> methods = new HashMap<MethodCost, MethodInfo>();
+        for (Map.Entry<MethodInfo, MethodCost> entry : methodCosts.entrySet()) {
+          MethodCost cost = entry.getValue();
+          methods.put(cost, entry.getKey());
+          Integer count = costSourceCounts.get(cost);
+          List<ViolationCost> sources = cost.getViolationCosts();
+          List<ViolationCost> added = new ArrayList<ViolationCost>(
+              sources.subList(count == null ? 0 : count, sources.size()));
+          if (cost == methodCost) {
+            costSources = added;
+          } else if (!added.isEmpty()) {
+            calledCostSources.put(entry.getKey(), added);
+          }
+        }
+        MethodSummaries.Summary call =
+            recorder.finishRecording(start, new Cost(), false, false, false);
+        recorded = true;
+        if (!meter.isExhausted()) {
+          implicitCosts.add(implicitMethod, new ImplicitCostSummaries.Summary(call, costSources,
+              calledCostSources, methods));
+        }
+      } finally {
+        if (!recorded) {
+          recorder.abortRecording();
+        }
+      }
+    }
+
+    private void recordImplicitCall(MethodInfo implicitMethod, Reason reason) {
       if (implicitMethod.getMethodThis() != null) {
         variableState.setInjectable(implicitMethod.getMethodThis());
       }
@@ -160,6 +239,28 @@ public class TestabilityVisitor {
           .getMethodThis(), implicitMethod.getParameters(), ret);
     }
 
+    /**
+     * Adds the {@code costSources} of a summary to the {@code cost}, with the calls they refer
+     * to from the {@code methods} of the summary referring to the costs of the methods here.
+     */
+    private void addCostSources(MethodCost cost, List<ViolationCost> costSources,
+        Map<MethodCost, MethodInfo> methods) {
+      for (ViolationCost costSource : costSources) {
+        if (costSource instanceof MethodInvocationCost) {
+          MethodInvocationCost invocation = (MethodInvocationCost) costSource;
+          MethodCost calledCost = getMethodCostCache(methods.get(invocation.getMethodCost()));
+          if (invocation instanceof ConstructorInvocationCost) {
+            costSource = new ConstructorInvocationCost(invocation.getLocation(), calledCost,
+                invocation.getCostSourceType(), invocation.getCost());
+          } else {
+            costSource = new MethodInvocationCost(invocation.getLocation(), calledCost,
+                invocation.getCostSourceType(), invocation.getCost());
+          }
+        }
+        cost.addCostSource(costSource);
+      }
+    }
+
     public MethodCost applyMethodOperations() {
       for (Integer lineNumberWithComplexity : method.getLinesOfComplexity()) {
         addCyclomaticCost(lineNumberWithComplexity);
@@ -169,8 +270,12 @@ public class TestabilityVisitor {
       }
       setInjectable(method.getParameters());
       Constant returnVariable = new Constant("rootReturn", JavaType.OBJECT);
-      applyMethodOperations(-1, method, method.getMethodThis(), method
-          .getParameters(), returnVariable);
+      startMethodOperations(-1, method, method.getParameters());
+      run(this);
+      incrementLoD(-1, method, method.getMethodThis(), returnVariable, parentFrame);
+      if (meter.isExhausted()) {
+        methodCost.markTruncated();
+      }
       return methodCost;
     }
 
@@ -179,12 +284,23 @@ public class TestabilityVisitor {
       if (remainingDepth == 0) {
         return super.createChildFrame(method);
       } else {
-        return new CostRecordingFrame(err, classRepository, this, whitelist,
-            globalVariableState, methodCosts, alreadyVisited, method,
+        return new CostRecordingFrame(err, missingClasses, classRepository, this, whitelist,
+            globalVariableState, recorder, meter, methodCosts, alreadyVisited, method,
             remainingDepth - 1);
       }
     }
 
+    @Override
+    protected void cutOff() {
+      super.cutOff();
+      methodCost.markTruncated();
+    }
+
+    @Override
+    protected boolean recordsCallDetails() {
+      return remainingDepth > 0;
+    }
+
     @Override
     void assignVariable(Variable destination, int lineNumber,
         ParentFrame sourceFrame, Variable source) {
@@ -209,6 +325,13 @@ public class TestabilityVisitor {
 
   public static class Frame extends ParentFrame {
 
+    /**
+     * What a call reads of each argument, in the signatures of the summarized calls.
+     */
+    private static final int INJECTABLE_ARGUMENT = 1;
+    private static final int GLOBAL_ARGUMENT = 2;
+    private static final int NON_FINAL_FIELD_ARGUMENT = 4;
+
     protected final ParentFrame parentFrame;
     protected final Cost direct = new Cost();
     protected final Cost indirect = new Cost();
@@ -216,21 +339,41 @@ public class TestabilityVisitor {
     protected Variable returnValue;
     protected final WhiteList whitelist;
     protected final PrintStream err;
+    protected final MissingClasses missingClasses;
     protected final ClassRepository classRepository;
     protected final Set<MethodInfo> alreadyVisited;
-
-    public Frame(PrintStream err, ClassRepository classRepository,
-        ParentFrame parentFrame, WhiteList whitelist,
-        VariableState globalVariables, Set<MethodInfo> alreadyVisited,
-        MethodInfo method) {
+    protected final SummaryRecorder recorder;
+    protected final AnalysisBudget.Meter meter;
+    /**
+     * The operations of the method, the next one to interpret, and the call made by the last
+     * one, for {@link #run(Frame)}.
+     */
+    private List<Operation> operations = Collections.emptyList();
+    private int nextOperation;
+    private boolean running;
+    private Frame call;
+    private Continuation continuation;
+
+    public Frame(PrintStream err, MissingClasses missingClasses,
+        ClassRepository classRepository, ParentFrame parentFrame, WhiteList whitelist,
+        VariableState globalVariables, SummaryRecorder recorder, AnalysisBudget.Meter meter,
+        Set<MethodInfo> alreadyVisited, MethodInfo method) {
       super(globalVariables);
       this.err = err;
+      this.missingClasses = missingClasses;
       this.classRepository = classRepository;
       this.parentFrame = parentFrame;
       this.whitelist = whitelist;
+      this.recorder = recorder;
+      this.meter = meter;
       this.alreadyVisited = alreadyVisited;
       this.method = method;
-      alreadyVisited.add(method);
+      meter.countFrame();
+      if (recorder == null) {
+        alreadyVisited.add(method);
+      } else {
+        recorder.visit(alreadyVisited, method);
+      }
     }
 
     protected void addCyclomaticCost(int lineNumber) {
@@ -331,9 +474,12 @@ public class TestabilityVisitor {
       return variableState;
     }
 
-    protected void applyMethodOperations(int lineNumber, MethodInfo toMethod,
-        Variable methodThis, List<? extends Variable> parameters,
-        Variable returnVariable) {
+    /**
+     * Assigns the {@code parameters} of a call to the {@code toMethod}, whose operations this
+     * frame interprets next.
+     */
+    protected void startMethodOperations(int lineNumber, MethodInfo toMethod,
+        List<? extends Variable> parameters) {
       if (parameters.size() != toMethod.getParameters().size()) {
         throw new IllegalStateException(
             "Argument count does not match method parameter count.");
@@ -344,15 +490,12 @@ public class TestabilityVisitor {
             parentFrame, var);
       }
       returnValue = null;
-      for (Operation operation : toMethod.getOperations()) {
-        operation.visit(this);
-      }
-      incrementLoD(lineNumber, toMethod, methodThis, returnVariable, parentFrame);
+      operations = toMethod.getOperations();
+      nextOperation = 0;
     }
 
-    private void recordMethodCall(int lineNumber, MethodInfo toMethod,
-        Variable methodThis, List<? extends Variable> parameters,
-        Variable returnVariable) {
+    private void startMethodCall(int lineNumber, MethodInfo toMethod,
+        Variable methodThis, List<? extends Variable> parameters) {
       for (Integer lineNumberWithComplexity : toMethod.getLinesOfComplexity()) {
         addCyclomaticCost(lineNumberWithComplexity);
       }
@@ -360,11 +503,85 @@ public class TestabilityVisitor {
         assignParameter(lineNumber, toMethod.getMethodThis(), parentFrame,
             methodThis);
       }
-      applyMethodOperations(lineNumber, toMethod, methodThis, parameters,
-          returnVariable);
+      startMethodOperations(lineNumber, toMethod, parameters);
+    }
+
+    private void finishMethodCall(int lineNumber, MethodInfo toMethod,
+        Variable methodThis, Variable returnVariable) {
+      incrementLoD(lineNumber, toMethod, methodThis, returnVariable, parentFrame);
       assignReturnValue(lineNumber, returnVariable);
     }
 
+    /**
+     * Interprets the operations of the {@code frame}, and of the frames of the calls they make
+     * in turn. The frames are kept on a stack of their own rather than on the Java stack, so
+     * deep call chains do not overflow it. A call which returns goes on with its {@link
+     * Continuation}. Once the {@link AnalysisBudget} runs out, the frames are cut off and
+     * return with the costs they found so far.
+     */
+    static void run(Frame frame) {
+      List<Frame> stack = new ArrayList<Frame>();
+      frame.running = true;
+      stack.add(frame);
+      try {
+        while (!stack.isEmpty()) {
+          Frame top = stack.get(stack.size() - 1);
+          if (top.nextOperation < top.operations.size()) {
+            if (!top.meter.countOperation()) {
+              top.cutOff();
+              continue;
+            }
+            top.operations.get(top.nextOperation++).visit(top);
+            Frame callee = top.call;
+            if (callee != null) {
+              top.call = null;
+              callee.running = true;
+              stack.add(callee);
+            }
+          } else {
+            stack.remove(stack.size() - 1);
+            top.running = false;
+            if (top.continuation != null) {
+              top.continuation.returned();
+            }
+          }
+        }
+      } finally {
+        for (int i = stack.size() - 1; i >= 0; i--) {
+          Frame unfinished = stack.get(i);
+          unfinished.running = false;
+          if (unfinished.continuation != null) {
+            unfinished.continuation.aborted();
+          }
+        }
+      }
+    }
+
+    /**
+     * Skips the operations of this frame which are left, because the budget ran out.
+     */
+    protected void cutOff() {
+      nextOperation = operations.size();
+    }
+
+    /**
+     * Makes a call to the {@code callee}, whose operations are started already. If this frame is
+     * being run, the callee is run once the current operation is done, otherwise right away.
+     * Then the call goes on with the {@code continuation}.
+     * <p>
+     * A frame which is not being run is the top of a computation applying an implicit cost,
+     * which needs its costs right away. The callee is then run on a stack of its own, which the
+     * calls it makes are pushed on, so only this one call is on the Java stack.
+     */
+    private void call(Frame callee, Continuation continuation) {
+      callee.continuation = continuation;
+      if (running) {
+        call = callee;
+      } else {
+        run(callee);
+      }
+    }
+
     public void recordMethodCall(String clazzName, int lineNumber,
         String methodName, Variable methodThis, List<Variable> parameters,
         Variable returnVariable) {
@@ -374,7 +591,7 @@ public class TestabilityVisitor {
         }
         MethodInfo toMethod = classRepository.getClass(clazzName).getMethod(
             methodName);
-        if (alreadyVisited.contains(toMethod)) {
+        if (isAlreadyVisited(toMethod)) {
           // Method already counted, skip (to prevent recursion)
           incrementLoD(lineNumber, toMethod, methodThis, returnVariable, parentFrame);
         } else if (toMethod.canOverride()
@@ -389,26 +606,205 @@ public class TestabilityVisitor {
             methodThis, parameters, returnVariable);
         }
       } catch (ClassNotFoundException e) {
-        err.println("WARNING: class not found: " + clazzName);
+        classNotFound(clazzName);
       } catch (MethodNotFoundException e) {
-        err.println("WARNING: method not found: " + e.getMethodName() + " in "
+        warn("WARNING: method not found: " + e.getMethodName() + " in "
             + e.getClassInfo().getName());
       }
     }
 
-    protected void recordNonOveridableMethodCall(Reason reason, int lineNumber,
-        MethodInfo toMethod, Variable methodThis,
-        List<? extends Variable> parameters, Variable returnVariable) {
-      Frame childFrame = createChildFrame(toMethod);
-      childFrame.recordMethodCall(lineNumber, toMethod, methodThis, parameters,
-          returnVariable);
-      addMethodInvocationCost(lineNumber, toMethod, childFrame.getTotalCost()
-          .copyNoLOD(), reason);
+    private boolean isAlreadyVisited(MethodInfo toMethod) {
+      if (recorder == null) {
+        return alreadyVisited.contains(toMethod);
+      } else {
+        return recorder.isVisited(alreadyVisited, toMethod);
+      }
+    }
+
+    void classNotFound(String clazzName) {
+      if (recorder != null) {
+        recorder.classNotFound(clazzName);
+      }
+      if (missingClasses.add(clazzName)) {
+        err.println("WARNING: class not found: " + clazzName);
+      }
+    }
+
+    void warn(String message) {
+      if (recorder != null) {
+        recorder.warning(message);
+      }
+      err.println(message);
+    }
+
+    protected void recordNonOveridableMethodCall(final Reason reason, final int lineNumber,
+        final MethodInfo toMethod, final Variable methodThis,
+        List<? extends Variable> parameters, final Variable returnVariable) {
+      if (recorder != null && !recordsCallDetails()) {
+        recordSummarizedCall(reason, lineNumber, toMethod, methodThis, parameters,
+            returnVariable);
+      } else {
+        final Frame childFrame = createChildFrame(toMethod);
+        childFrame.startMethodCall(lineNumber, toMethod, methodThis, parameters);
+        call(childFrame, new Continuation() {
+          @Override
+          void returned() {
+            childFrame.finishMethodCall(lineNumber, toMethod, methodThis, returnVariable);
+            Cost cost = childFrame.getTotalCost().copyNoLOD();
+            addMethodInvocationCost(lineNumber, toMethod, cost, reason);
+          }
+        });
+      }
+    }
+
+    /**
+     * @return whether the costs of the calls from this frame are recorded in detail, in which
+     *     case the calls are not summarized.
+     */
+    protected boolean recordsCallDetails() {
+      return false;
+    }
+
+    /**
+     * Costs a call like {@link #startMethodCall(int, MethodInfo, Variable, List)} does,
+     * through the {@link MethodSummaries}: the call is only interpreted if there is no summary
+     * of it which applies here, and then it is summarized.
+     */
+    private void recordSummarizedCall(final Reason reason, final int lineNumber,
+        final MethodInfo toMethod, Variable methodThis, List<? extends Variable> parameters,
+        final Variable returnVariable) {
+      byte[] signature = new byte[parameters.size() + 1];
+      if (toMethod.isInstance()) {
+        signature[0] = argumentSignature(methodThis);
+      }
+      for (int i = 0; i < parameters.size(); i++) {
+        signature[i + 1] = argumentSignature(parameters.get(i));
+      }
+      summarize(lineNumber, toMethod, signature, new Summarized() {
+        @Override
+        void summarized(MethodSummaries.Summary summary) {
+          Cost cost = summary.getCost();
+          LocalVariableState returnState = new LocalVariableState(globalVariableState);
+          if (summary.returnInjectable) {
+            returnState.setInjectable(returnVariable);
+          }
+          if (returnVariable.isGlobal() || summary.returnGlobal) {
+            returnState.setGlobal(returnVariable);
+            if (summary.returnGlobalCost) {
+              cost.add(Cost.global(1));
+            }
+          }
+          addMethodInvocationCost(lineNumber, toMethod, cost, reason);
+        }
+      });
+    }
+
+    /**
+     * Finds the summary of calling {@code toMethod} with arguments of the {@code signature}
+     * from this frame, or interprets the call and keeps its summary if there is no summary of
+     * it which applies here. Then the call goes on with the summary.
+     */
+    private void summarize(int lineNumber, final MethodInfo toMethod, final byte[] signature,
+        final Summarized summarized) {
+      MethodSummaries.Summary summary =
+          recorder.getSummaries().find(toMethod, signature, recorder, alreadyVisited);
+      if (summary != null) {
+        recorder.replay(summary, alreadyVisited, this);
+        summarized.summarized(summary);
+        return;
+      }
+      final int start = recorder.startRecording();
+      final Frame childFrame;
+      boolean started = false;
+      try {
+        childFrame = createChildFrame(toMethod);
+        childFrame.startSummarizedCall(lineNumber, toMethod, signature);
+        started = true;
+      } finally {
+        if (!started) {
+          recorder.abortRecording();
+        }
+      }
+      call(childFrame, new Continuation() {
+        @Override
+        void returned() {
+          Variable childReturn = childFrame.returnValue;
+          Cost cost = childFrame.getTotalCost().copyNoLOD();
+          boolean returnInjectable = childFrame.variableState.isInjectable(childReturn);
+          boolean returnGlobal = childFrame.variableState.isGlobal(childReturn);
+          boolean returnGlobalCost = childReturn instanceof LocalField && !childReturn.isFinal();
+          // A call which may have been cut off is not summarized for other calls.
+          MethodSummaries.Summary summary = meter.isExhausted()
+              ? recorder.finishRecording(start, cost, returnInjectable, returnGlobal,
+                  returnGlobalCost)
+              : recorder.finishRecording(start, toMethod, signature, cost, returnInjectable,
+                  returnGlobal, returnGlobalCost);
+          summarized.summarized(summary);
+        }
+
+        @Override
+        void aborted() {
+          recorder.abortRecording();
+        }
+      });
+    }
+
+    /**
+     * @return what {@link #assignParameter} reads of the {@code argument}.
+     */
+    private byte argumentSignature(Variable argument) {
+      int signature = 0;
+      if (variableState.isInjectable(argument)) {
+        signature |= INJECTABLE_ARGUMENT;
+      }
+      if (variableState.isGlobal(argument)) {
+        signature |= GLOBAL_ARGUMENT;
+      }
+      if (argument instanceof LocalField && !argument.isFinal()) {
+        signature |= NON_FINAL_FIELD_ARGUMENT;
+      }
+      return (byte) signature;
+    }
+
+    /**
+     * Starts a call like {@link #startMethodCall(int, MethodInfo, Variable, List)}, but with the
+     * arguments given by their signature. The return value is not assigned when it returns.
+     */
+    private void startSummarizedCall(int lineNumber, MethodInfo toMethod, byte[] signature) {
+      for (Integer lineNumberWithComplexity : toMethod.getLinesOfComplexity()) {
+        addCyclomaticCost(lineNumberWithComplexity);
+      }
+      if (toMethod.isInstance()) {
+        assignArgument(lineNumber, toMethod.getMethodThis(), signature[0]);
+      }
+      if (signature.length != toMethod.getParameters().size() + 1) {
+        throw new IllegalStateException(
+            "Argument count does not match method parameter count.");
+      }
+      int i = 1;
+      for (ParameterInfo parameter : toMethod.getParameters()) {
+        assignArgument(lineNumber, parameter, signature[i++]);
+      }
+      returnValue = null;
+      operations = toMethod.getOperations();
+      nextOperation = 0;
+    }
+
+    private void assignArgument(int lineNumber, Variable parameter, byte signature) {
+      if ((signature & INJECTABLE_ARGUMENT) != 0) {
+        variableState.setInjectable(parameter);
+      }
+      if (parameter.isGlobal() || (signature & GLOBAL_ARGUMENT) != 0) {
+        variableState.setGlobal(parameter);
+        if ((signature & NON_FINAL_FIELD_ARGUMENT) != 0) {
+          addGlobalCost(lineNumber, parameter);
+        }
+      }
     }
 
     protected Frame createChildFrame(MethodInfo toMethod) {
-      return new Frame(err, classRepository, this, whitelist,
-          getGlobalVariables(), alreadyVisited, toMethod);
+      return new Frame(err, missingClasses, classRepository, this, whitelist,
+          getGlobalVariables(), recorder, meter, alreadyVisited, toMethod);
     }
 
     private void recordOverridableMethodCall(int lineNumber,
@@ -445,6 +841,28 @@ public class TestabilityVisitor {
 
   }
 
+  /**
+   * What a frame does once a call it made returns, which would follow the call if it was made
+   * recursively (see {@link Frame#run(Frame)}).
+   */
+  abstract static class Continuation {
+    abstract void returned();
+
+    /**
+     * Is called instead of {@link #returned()} if an exception ends the interpretation before
+     * the call returns.
+     */
+    void aborted() {
+    }
+  }
+
+  /**
+   * What a frame does with the summary of a call it made.
+   */
+  abstract static class Summarized {
+    abstract void summarized(MethodSummaries.Summary summary);
+  }
+
   public static class ParentFrame {
     protected final VariableState globalVariableState;
     protected final LocalVariableState variableState;
@@ -468,19 +886,55 @@ public class TestabilityVisitor {
   private final VariableState globalVariables;
   private final ClassRepository classRepository;
   private final PrintStream err;
+  private final MissingClasses missingClasses;
+  private final SummaryRecorder recorder;
+  private final AnalysisBudget.Meter meter;
   private final WhiteList whitelist;
 
   public TestabilityVisitor(ClassRepository classRepository,
       VariableState variableState, PrintStream err, WhiteList whitelist) {
+    this(classRepository, variableState, err, new MissingClasses(), whitelist);
+  }
+
+  /**
+   * @param missingClasses where the classes which are not found are counted, so they are
+   *     warned about only once.
+   */
+  public TestabilityVisitor(ClassRepository classRepository,
+      VariableState variableState, PrintStream err, MissingClasses missingClasses,
+      WhiteList whitelist) {
+    this(classRepository, variableState, err, missingClasses, null, whitelist);
+  }
+
+  /**
+   * @param summaries where the calls are summarized, so that each call is interpreted only
+   *     once for all the computations which share them, or {@code null}.
+   */
+  public TestabilityVisitor(ClassRepository classRepository,
+      VariableState variableState, PrintStream err, MissingClasses missingClasses,
+      MethodSummaries summaries, WhiteList whitelist) {
+    this(classRepository, variableState, err, missingClasses, summaries, whitelist,
+        AnalysisBudget.UNLIMITED.start(null));
+  }
+
+  /**
+   * @param meter what the interpretations spend of their {@link AnalysisBudget}.
+   */
+  public TestabilityVisitor(ClassRepository classRepository,
+      VariableState variableState, PrintStream err, MissingClasses missingClasses,
+      MethodSummaries summaries, WhiteList whitelist, AnalysisBudget.Meter meter) {
     this.classRepository = classRepository;
-    this.globalVariables = variableState;
+    this.recorder = summaries == null ? null : new SummaryRecorder(variableState, summaries);
+    this.globalVariables = recorder == null ? variableState : recorder;
     this.err = err;
+    this.missingClasses = missingClasses;
     this.whitelist = whitelist;
+    this.meter = meter;
   }
 
   public CostRecordingFrame createFrame(MethodInfo method, int recordingDepth) {
-    return new CostRecordingFrame(err, classRepository, whitelist,
-        globalVariables, method, recordingDepth);
+    return new CostRecordingFrame(err, missingClasses, classRepository, whitelist,
+        globalVariables, recorder, meter, method, recordingDepth);
   }
 
   @Override
@@ -17,6 +17,7 @@
 
 package com.google.test.metric;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -25,37 +26,58 @@ public class VariableState {
   private final Set<Variable> globals = new HashSet<Variable>();
 
   boolean isGlobal(Variable var) {
+    return isGlobal(var, Collections.<Variable>emptySet());
+  }
+
+  /**
+   * @return whether {@code var} would be global if {@code moreGlobals} were set global too.
+   */
+  boolean isGlobal(Variable var, Set<Variable> moreGlobals) {
     if (var == null) {
       return false;
     }
     if (var.isGlobal()) {
       return true;
     }
-    if (globals.contains(var)) {
+    if (contains(globals, moreGlobals, var)) {
       return true;
     }
     if (var instanceof LocalField) {
       LocalField field = (LocalField) var;
-      return globals.contains(field.getInstance()) || globals.contains(field.getField());
+      return contains(globals, moreGlobals, field.getInstance())
+          || contains(globals, moreGlobals, field.getField());
     }
     return false;
   }
 
   boolean isInjectable(Variable var) {
+    return isInjectable(var, Collections.<Variable>emptySet());
+  }
+
+  /**
+   * @return whether {@code var} would be injectable if {@code moreInjectables} were set
+   *     injectable too.
+   */
+  boolean isInjectable(Variable var, Set<Variable> moreInjectables) {
     if (var == null) {
       return false;
     }
-    if (injectables.contains(var)) {
+    if (contains(injectables, moreInjectables, var)) {
       return true;
     } else {
       if (var instanceof LocalField) {
-        return injectables.contains(((LocalField) var).getField());
+        return contains(injectables, moreInjectables, ((LocalField) var).getField());
       } else {
         return false;
       }
     }
   }
 
+  private static boolean contains(Set<Variable> variables, Set<Variable> moreVariables,
+      Variable var) {
+    return variables.contains(var) || moreVariables.contains(var);
+  }
+
   void setGlobal(Variable var) {
     globals.add(var);
   }
@@ -18,21 +18,47 @@ package com.google.test.metric.asm;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
 import com.google.test.metric.ClassInfo;
 import com.google.test.metric.JavaClassRepository;
+import com.google.test.metric.MethodBodyBudget;
+import com.google.test.metric.MethodInfo;
+import com.google.test.metric.Visibility;
 
 public class ClassInfoBuilderVisitor extends NoopClassVisitor {
 
   private final JavaClassRepository repository;
+  private final ClassReader lazyMethodBodies;
+  private final boolean stubMethodBodies;
   private ClassInfo classInfo;
+  private MethodBodyDecoder bodyDecoder;
   private JavaNamer namer = new JavaNamer();
 
   public ClassInfoBuilderVisitor(JavaClassRepository repository) {
+    this(repository, null);
+  }
+
+  /**
+   * @param lazyMethodBodies if not {@code null}, method bodies are skipped and decoded
+   *     from this reader the first time they are needed.
+   */
+  public ClassInfoBuilderVisitor(JavaClassRepository repository, ClassReader lazyMethodBodies) {
+    this(repository, lazyMethodBodies, false);
+  }
+
+  /**
+   * @param stubMethodBodies if {@code true}, method bodies are never decoded, the methods
+   *     only have their signatures. Used for classes whose code is not analyzed.
+   */
+  public ClassInfoBuilderVisitor(JavaClassRepository repository, ClassReader lazyMethodBodies,
+      boolean stubMethodBodies) {
     this.repository = repository;
+    this.lazyMethodBodies = lazyMethodBodies;
+    this.stubMethodBodies = stubMethodBodies;
   }
 
   @Override
@@ -49,6 +75,12 @@ public class ClassInfoBuilderVisitor extends NoopClassVisitor {
     classInfo = new ClassInfo(namer.nameClass(name), isInterface, superClass,
         interfaceList, guessSourceFileName(name));
     repository.addClass(classInfo);
+    if (lazyMethodBodies != null || stubMethodBodies) {
+      // With a budget the class is read again for each decoding, rather than kept uncounted.
+      ClassReader reader = stubMethodBodies || repository.getMethodBodyBudget() != null
+          ? null : lazyMethodBodies;
+      bodyDecoder = new MethodBodyDecoder(repository, reader, classInfo, stubMethodBodies);
+    }
   }
 
   public String guessSourceFileName(String className) {
@@ -66,9 +98,22 @@ public class ClassInfoBuilderVisitor extends NoopClassVisitor {
       String signature, String[] exceptions) {
     boolean isStatic = (access & Opcodes.ACC_STATIC) == Opcodes.ACC_STATIC;
     boolean isFinal = (access & Opcodes.ACC_FINAL) == Opcodes.ACC_FINAL;
+    Visibility visibility = JavaVisibility.valueFromJavaBytecode(access);
+    if (bodyDecoder != null) {
+      boolean isConstructor = name.equals("<init>") || name.equals("<clinit>");
+      // Stubs have no operations, there is nothing to evict.
+      MethodBodyBudget bodyBudget = stubMethodBodies ? null : repository.getMethodBodyBudget();
+      MethodInfo method = new MethodInfo(classInfo,
+          namer.nameMethod(classInfo.getName(), name, desc), isStatic, visibility, isFinal,
+          isConstructor, bodyDecoder, bodyBudget);
+      if (stubMethodBodies) {
+        bodyDecoder.addStub(method, name, desc);
+      }
+      classInfo.addMethod(method);
+      return null;
+    }
     return new MethodVisitorBuilder(repository, classInfo, name, desc,
-        signature, exceptions, isStatic, isFinal, JavaVisibility
-            .valueFromJavaBytecode(access));
+        signature, exceptions, isStatic, isFinal, visibility);
   }
 
   @Override
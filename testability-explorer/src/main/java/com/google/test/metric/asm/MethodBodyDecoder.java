@@ -0,0 +1,171 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.asm;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.MethodVisitor;
+
+import com.google.test.metric.ClassInfo;
+import com.google.test.metric.JavaClassRepository;
+import com.google.test.metric.MethodInfo;
+
+/**
+ * Decodes the byte code of the methods of a class the first time the body of one of them is
+ * needed. Until then the methods are known by their signatures only, which is all that is
+ * needed for most of the classes loaded as super classes, interfaces or dependencies.
+ * <p>
+ * Each decoding is one pass over the class, which decodes the bodies of all the methods
+ * which have none, rather than one pass for each method.
+ * <p>
+ * Stubs get their parameters, but no operations.
+ * <p>
+ * The class reader is only kept until all the bodies are decoded, then the class is handed to
+ * {@link JavaClassRepository#bodiesDecoded(ClassInfo, byte[])}. Without a reader, the class
+ * is read from the class path again for each pass. That is what happens with a
+ * {@link com.google.test.metric.MethodBodyBudget}, which does not count the class bytes: a
+ * body which was evicted is decoded again from the class path, with the variables of the
+ * first decoding.
+ */
+public class MethodBodyDecoder implements MethodInfo.BodyDecoder {
+
+  private final JavaClassRepository repository;
+  private final ClassInfo classInfo;
+  private final boolean stubs;
+  private ClassReader classReader;
+  private final JavaNamer namer = new JavaNamer();
+  /** The name and descriptor in the byte code of each stub, by method name. */
+  private final Map<String, String[]> stubSignatures = new HashMap<String, String[]>();
+
+  /**
+   * @param classReader the class to decode the bodies from, or {@code null} to read it from
+   *     the repository each time bodies are decoded.
+   * @param stubs if {@code true}, the methods are decoded as stubs, from the signatures
+   *     given to {@link #addStub(MethodInfo, String, String)}.
+   */
+  public MethodBodyDecoder(JavaClassRepository repository, ClassReader classReader,
+      ClassInfo classInfo, boolean stubs) {
+    this.repository = repository;
+    this.classReader = classReader;
+    this.classInfo = classInfo;
+    this.stubs = stubs;
+  }
+
+  /**
+   * Remembers the signature of a method which is decoded as a stub, as there is no class
+   * reader to find it in.
+   */
+  synchronized void addStub(MethodInfo method, String name, String desc) {
+    stubSignatures.put(method.getName(), new String[] {name, desc});
+  }
+
+  public synchronized MethodInfo decode(MethodInfo method) {
+    if (method.hasBody()) {
+      // Decoded by another thread meanwhile.
+      return method;
+    }
+    if (stubs) {
+      String[] signature = stubSignatures.get(method.getName());
+      MethodInfo stub = new MethodVisitorBuilder(repository, classInfo, signature[0],
+          signature[1], null, null, method.isStatic(), method.isFinal(),
+          method.getVisibility()).buildMethodInfo();
+      method.setDecodedBody(stub);
+      return stub;
+    }
+    Map<String, MethodInfo> undecoded = new HashMap<String, MethodInfo>();
+    for (MethodInfo other : classInfo.getMethods()) {
+      if (!other.hasBody()) {
+        undecoded.put(other.getName(), other);
+      }
+    }
+    undecoded.put(method.getName(), method);
+    ClassReader reader = classReader;
+    if (reader == null) {
+      reader = new ClassReader(repository.readClassBytes(classInfo.getName()));
+    }
+    Map<MethodInfo, MethodInfo> decoded;
+    try {
+      decoded = decode(reader, undecoded);
+    } catch (RuntimeException e) {
+      // One of the other methods can not be decoded (e.g. it uses a missing class), which
+      // must not keep this one from being decoded.
+      if (undecoded.size() == 1) {
+        throw e;
+      }
+      undecoded.clear();
+      undecoded.put(method.getName(), method);
+      decoded = decode(reader, undecoded);
+    }
+    MethodInfo body = decoded.remove(method);
+    if (body == null) {
+      throw new IllegalStateException("Method " + method + " not found in " + classInfo);
+    }
+    for (Map.Entry<MethodInfo, MethodInfo> other : decoded.entrySet()) {
+      other.getKey().setDecodedBody(other.getValue());
+    }
+    // Last, so that it is the last one a budget evicts.
+    method.setDecodedBody(body);
+    if (classReader != null && allDecoded()) {
+      // The reader is only kept without a budget, so the bodies are never evicted.
+      byte[] classBytes = classReader.b;
+      classReader = null;
+      repository.bodiesDecoded(classInfo, classBytes);
+    }
+    return body;
+  }
+
+  private boolean allDecoded() {
+    for (MethodInfo method : classInfo.getMethods()) {
+      if (!method.hasBody()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param undecoded the methods to decode, by method name.
+   * @return the decoded bodies, by the method they are for.
+   */
+  private Map<MethodInfo, MethodInfo> decode(ClassReader reader,
+      final Map<String, MethodInfo> undecoded) {
+    final Map<MethodInfo, MethodInfo> decoded = new IdentityHashMap<MethodInfo, MethodInfo>();
+    reader.accept(new NoopClassVisitor() {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc,
+          String signature, String[] exceptions) {
+        final MethodInfo target =
+            undecoded.get(namer.nameMethod(classInfo.getName(), name, desc));
+        if (target == null) {
+          return null;
+        }
+        return new MethodVisitorBuilder(repository, classInfo, name, desc, signature,
+            exceptions, target.isStatic(), target.isFinal(), target.getVisibility(),
+            target.wasDecoded() ? target : null) {
+          @Override
+          public void visitEnd() {
+            decoded.put(target, buildMethodInfo());
+          }
+        };
+      }
+    }, 0);
+    return decoded;
+  }
+
+}
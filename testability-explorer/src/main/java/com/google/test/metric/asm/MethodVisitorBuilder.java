@@ -19,6 +19,7 @@ import static com.google.test.metric.asm.SignatureParser.parse;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -81,10 +82,28 @@ public class MethodVisitorBuilder implements MethodVisitor {
   private final List<LocalVariableInfo> localVariables = new ArrayList<LocalVariableInfo>();
   private final boolean isFinal;
   private final JavaNamer namer = new JavaNamer();
+  private Iterator<ParameterInfo> reusedParameters;
+  private Iterator<LocalVariableInfo> reusedLocalVariables;
 
   public MethodVisitorBuilder(ClassRepository repository, ClassInfo classInfo,
       String name, String desc, String signature, String[] exceptions,
       boolean isStatic, boolean isFinal, Visibility visibility) {
+    this(repository, classInfo, name, desc, signature, exceptions, isStatic, isFinal,
+        visibility, null);
+  }
+
+  /**
+   * @param decodedBefore a method whose body is decoded again, the variables it had are used
+   *     instead of new ones, so that the operations refer to the same variables as before.
+   *     {@code null} to create new variables.
+   */
+  public MethodVisitorBuilder(ClassRepository repository, ClassInfo classInfo,
+      String name, String desc, String signature, String[] exceptions,
+      boolean isStatic, boolean isFinal, Visibility visibility, MethodInfo decodedBefore) {
+    if (decodedBefore != null) {
+      reusedParameters = decodedBefore.getParameters().iterator();
+      reusedLocalVariables = decodedBefore.getLocalVariables().iterator();
+    }
     this.repository = repository;
     this.classInfo = classInfo;
     this.name = name;
@@ -94,12 +113,12 @@ public class MethodVisitorBuilder implements MethodVisitor {
     int slot = 0;
     if (!isStatic) {
       Type thisType = JavaType.fromJava(classInfo.getName());
-      methodThis = new LocalVariableInfo("this", thisType);
+      methodThis = newLocalVariable("this", thisType);
       slots.put(slot++, methodThis);
       localVariables.add((LocalVariableInfo) methodThis);
     }
     for (Type type : parse(desc).getParameters()) {
-      ParameterInfo parameterInfo = new ParameterInfo("param_" + slot, type);
+      ParameterInfo parameterInfo = newParameter("param_" + slot, type);
       parameters.add(parameterInfo);
       slots.put(slot++, parameterInfo);
       if (JavaType.isDoubleSlot(type)) {
@@ -245,7 +264,7 @@ public class MethodVisitorBuilder implements MethodVisitor {
     Type type = JavaType.fromDesc(desc);
     Variable variable = slots.get(slotNum);
     if (variable == null) {
-      LocalVariableInfo localVar = new LocalVariableInfo(name, type);
+      LocalVariableInfo localVar = newLocalVariable(name, type);
       slots.put(slotNum, localVar);
       localVariables.add(localVar);
     } else {
@@ -253,6 +272,33 @@ public class MethodVisitorBuilder implements MethodVisitor {
     }
   }
 
+  /**
+   * Decoding the same byte code creates the variables in the same order, so the variables
+   * of the earlier decoding are handed out in turn. Should they ever not match, new ones
+   * are created from there on.
+   */
+  private LocalVariableInfo newLocalVariable(String name, Type type) {
+    if (reusedLocalVariables != null && reusedLocalVariables.hasNext()) {
+      LocalVariableInfo reused = reusedLocalVariables.next();
+      if (reused.getType().equals(type)) {
+        return reused;
+      }
+      reusedLocalVariables = null;
+    }
+    return new LocalVariableInfo(name, type);
+  }
+
+  private ParameterInfo newParameter(String name, Type type) {
+    if (reusedParameters != null && reusedParameters.hasNext()) {
+      ParameterInfo reused = reusedParameters.next();
+      if (reused.getType().equals(type)) {
+        return reused;
+      }
+      reusedParameters = null;
+    }
+    return new ParameterInfo(name, type);
+  }
+
   public void visitLineNumber(final int line, final Label start) {
     lineNumbers.put(start, line);
     recorder.add(new Runnable() { // $6
@@ -266,6 +312,10 @@ public class MethodVisitorBuilder implements MethodVisitor {
   }
 
   public void visitEnd() {
+    classInfo.addMethod(buildMethodInfo());
+  }
+
+  MethodInfo buildMethodInfo() {
     for (Runnable runnable : recorder) {
       runnable.run();
     }
@@ -273,10 +323,9 @@ public class MethodVisitorBuilder implements MethodVisitor {
     try {
       String javaName = namer.nameMethod(classInfo.getName(), name, desc);
       boolean isConstructor = name.equals("<init>") || name.equals("<clinit>");
-      MethodInfo methodInfo = new MethodInfo(classInfo, javaName, startingLineNumber,
+      return new MethodInfo(classInfo, javaName, startingLineNumber,
           methodThis, parameters, localVariables, visibility,
           block.getOperations(), isFinal, isConstructor, cyclomaticComplexity);
-      classInfo.addMethod(methodInfo);
     } catch (IllegalStateException e) {
       throw new IllegalStateException("Error in " + classInfo + "." + name
           + desc, e);
@@ -382,7 +431,7 @@ public class MethodVisitorBuilder implements MethodVisitor {
   private Variable variable(int varIndex, Type type) {
     Variable variable = slots.get(varIndex);
     if (variable == null) {
-      LocalVariableInfo localVar = new LocalVariableInfo("local_" + varIndex, type);
+      LocalVariableInfo localVar = newLocalVariable("local_" + varIndex, type);
       slots.put(varIndex, localVar);
       localVariables.add(localVar);
       variable = localVar;
@@ -31,6 +31,10 @@ public class Block {
   private final List<Block> nextBlocks = new ArrayList<Block>();
   private final boolean isTerminal = false;
   private Constant exception;
+  /**
+   * Dense number of the block within its method, or -1 until the block is numbered.
+   */
+  private int index = -1;
 
   public Block(String id) {
     this.id = id;
@@ -43,6 +47,14 @@ public class Block {
     }
   }
 
+  /**
+   * Links the blocks found by the {@link BlockDecomposer}, which are already distinct.
+   */
+  void setLinks(List<Block> next, List<Block> previous) {
+    nextBlocks.addAll(next);
+    previousBlocks.addAll(previous);
+  }
+
   public void addOp(StackOperation operation) {
     operations.add(operation);
   }
@@ -91,6 +103,14 @@ public class Block {
     return id;
   }
 
+  int getIndex() {
+    return index;
+  }
+
+  void setIndex(int index) {
+    this.index = index;
+  }
+
   public void setExceptionHandler(int lineNumber, Constant exception) {
     if (this.exception == null) {
       operations.add(0, new Load(lineNumber, exception));
@@ -15,11 +15,9 @@
  */
 package com.google.test.metric.method;
 
-import static java.util.Arrays.asList;
-
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -37,102 +35,77 @@ import com.google.test.metric.method.op.stack.Throw;
 import com.google.test.metric.method.op.turing.Operation;
 
 /**
+ * Breaks the bytecodes of a method into blocks, and links the blocks into a control flow
+ * graph.
+ * <p>
+ * The bytecodes are numbered in the order they are added, and the graph is kept by those
+ * numbers: a bit set of the bytecodes which start a block (the leaders), the block of each
+ * bytecode, and the successors and predecessors of each block as ranges of int arrays. The
+ * {@link Block}s are only created from it for {@link Stack2Turing}, and are numbered in order
+ * so that it can keep them in bit sets.
+ *
  * @author misko@google.com <Misko Hevery>
  */
 public class BlockDecomposer {
 
+  private final List<StackOperation> operations = new ArrayList<StackOperation>();
   /**
-   * Method is broken down into one frame per bytecode in order to break it down
-   * into blocks
+   * Bytecode which each label is attached to.
    */
-  private static class Frame {
-
-    /**
-     * Next frame (ie next bytecode)
-     */
-    private Frame next;
-    /**
-     * Operation in this frame
-     */
-    private final StackOperation operation;
-    /**
-     * Any label associated with this bytecode
-     */
-    private Label label;
-    /**
-     * Block which this bytecode ended up assigned to
-     */
-    public Block block;
-    /**
-     * True if this is first bytecode of a block (GOTO). If true then new block
-     * will start here.
-     */
-    public boolean blockStartsHere;
-    /**
-     * If true then this will be last instruction in block and new block will
-     * start on next frame.
-     */
-    public boolean blockEndsHere;
-    /**
-     * If not null current block will link with block that this field points to.
-     */
-    public List<Label> gotoLabels = new ArrayList<Label>();
-    /**
-     * This instruction ends execution of block (ie return, throw) If this is
-     * true then this and subsequent blocks will not be linked
-     */
-    public boolean terminal;
-
-    public Frame(Frame frame, StackOperation operation, Label label) {
-      this.operation = operation;
-      this.label = label;
-      if (frame != null) {
-        frame.nextFrame(this);
-      }
-    }
-
-    private void nextFrame(Frame frame) {
-      next = frame;
-    }
-
-    @Override
-    public String toString() {
-      ByteArrayOutputStream buf = new ByteArrayOutputStream();
-      PrintStream out = new PrintStream(buf, true);
-      out.printf("%-10s %-70s %-15s s=%-5b e=%-5b t=%-5b goto=%s", label, operation,
-          block == null ? null : block.getId(), blockStartsHere, blockEndsHere,
-          terminal, gotoLabels);
-      return buf.toString();
-    }
-
-  }
-
-  private final Map<Label, Frame> frames = new HashMap<Label, Frame>();
+  private final Map<Label, Integer> labels = new HashMap<Label, Integer>();
+  /**
+   * Bytecodes which end execution of their block (ie goto, return, throw). The blocks
+   * after them are not linked to them.
+   */
+  private final BitSet terminal = new BitSet();
+  /**
+   * Bytecodes which are the last of their block, a new block starts after them.
+   */
+  private final BitSet blockEnds = new BitSet();
+  /**
+   * The jumps, as the bytecode they jump from (in order) and the label they jump to.
+   */
+  private int[] jumpSources = new int[8];
+  private final List<Label> jumpTargets = new ArrayList<Label>();
   private final Map<Label, Block> subrutineBlocks = new HashMap<Label, Block>();
-  private final List<Runnable> extraLinkSteps = new ArrayList<Runnable>();
+  private final List<Label> handlerLabels = new ArrayList<Label>();
+  private final List<String> handlerTypes = new ArrayList<String>();
   private final List<Block> exceptionHandlerBlocks = new ArrayList<Block>();
-  private Frame firstFrame;
-  private Frame lastFrame;
   private Label lastLabel;
-  private Block mainBlock;
   private int counter = 0;
 
+  /**
+   * Bytecodes which start a block.
+   */
+  private final BitSet leaders = new BitSet();
+  private Block[] blocks;
+  private int blockCount;
+  private int[] blockOfOperation;
+  /**
+   * The successors of block {@code b} are {@code successors[successorOffsets[b]]} up to
+   * {@code successors[successorOffsets[b + 1]]}, and the same for the predecessors.
+   */
+  private int[] successorOffsets;
+  private int[] successors;
+  private int[] predecessorOffsets;
+  private int[] predecessors;
+
   public void addOp(StackOperation operation) {
-    lastFrame = new Frame(lastFrame, operation, lastLabel);
+    operations.add(operation);
     if (operation instanceof Return || operation instanceof Throw) {
-      lastFrame.terminal = true;
-      lastFrame.blockEndsHere = true;
-    }
-    if (firstFrame == null) {
-      firstFrame = lastFrame;
+      terminal.set(lastOperation());
+      blockEnds.set(lastOperation());
     }
     applyLastLabel();
   }
 
+  private int lastOperation() {
+    return operations.size() - 1;
+  }
+
   private void applyLastLabel() {
     if (lastLabel != null) {
-      frames.put(lastLabel, lastFrame);
-      lastFrame.label = lastLabel;
+      labels.put(lastLabel, lastOperation());
       lastLabel = null;
     }
   }
@@ -146,18 +119,27 @@ public class BlockDecomposer {
   }
 
   public void unconditionalGoto(Label label) {
-    lastFrame.blockEndsHere = true;
-    lastFrame.gotoLabels.add(label);
-    lastFrame.terminal = true;
+    blockEnds.set(lastOperation());
+    addJump(label);
+    terminal.set(lastOperation());
     applyLastLabel();
   }
 
   public void conditionalGoto(Label label) {
-    lastFrame.blockEndsHere = true;
-    lastFrame.gotoLabels.add(label);
+    blockEnds.set(lastOperation());
+    addJump(label);
     applyLastLabel();
   }
 
+  private void addJump(Label label) {
+    int jump = jumpTargets.size();
+    if (jump == jumpSources.length) {
+      jumpSources = Arrays.copyOf(jumpSources, jump * 2);
+    }
+    jumpSources[jump] = lastOperation();
+    jumpTargets.add(label);
+  }
+
   public void jumpSubroutine(Label label, int lineNumber) {
     Block subBlock = subrutineBlocks.get(label);
     if (subBlock == null) {
@@ -168,102 +150,172 @@ public class BlockDecomposer {
     applyLastLabel();
   }
 
-  public void tryCatchBlock(Label start, final Label end, final Label handler,
-      final String eType) {
-    extraLinkSteps.add(new Runnable() {
-      public void run() {
-        Block handlerBlock = frames.get(handler).block;
-        Type type = eType == null ? JavaType.fromClass(Throwable.class) : JavaType.fromJava(eType);
-        handlerBlock.setExceptionHandler(-1, new Constant("?", type));
-        exceptionHandlerBlocks.add(handlerBlock);
-      }
-    });
+  public void tryCatchBlock(Label start, Label end, Label handler, String eType) {
+    handlerLabels.add(handler);
+    handlerTypes.add(eType);
   }
 
-  public void tableSwitch(final Label dflt, final Label... labels) {
-    lastFrame.terminal = true;
-    lastFrame.blockEndsHere = true;
-    lastFrame.gotoLabels.addAll(asList(labels));
-    lastFrame.gotoLabels.add(dflt);
+  public void tableSwitch(Label dflt, Label... labels) {
+    terminal.set(lastOperation());
+    blockEnds.set(lastOperation());
+    for (Label label : labels) {
+      addJump(label);
+    }
+    addJump(dflt);
     applyLastLabel();
   }
 
   public void decomposeIntoBlocks() {
-    if (firstFrame != null) {
-      breakIntoBlocks();
+    if (!operations.isEmpty()) {
+      findLeaders();
       copyToBlocks();
       linkBlocks();
-      for (Runnable extraLinkStep : extraLinkSteps) {
-        extraLinkStep.run();
-      }
-      mainBlock = firstFrame.block;
+      linkExceptionHandlers();
     }
   }
 
-  private void breakIntoBlocks() {
-    Frame frame = firstFrame;
-    while (frame != null) {
-      for (Label label : frame.gotoLabels) {
-        frames.get(label).blockStartsHere = true;
-        frame.blockEndsHere = true;
-      }
-      if (subrutineBlocks.containsKey(frame.label)) {
-        frame.blockStartsHere = true;
+  private void findLeaders() {
+    for (int jump = 0; jump < jumpTargets.size(); jump++) {
+      leaders.set(labels.get(jumpTargets.get(jump)));
+      blockEnds.set(jumpSources[jump]);
+    }
+    for (Label subroutine : subrutineBlocks.keySet()) {
+      Integer start = labels.get(subroutine);
+      if (start != null) {
+        leaders.set(start);
       }
-      frame = frame.next;
     }
   }
 
   private void copyToBlocks() {
-    Frame frame = firstFrame;
+    Map<Integer, Block> subroutineStarts = new HashMap<Integer, Block>();
+    for (Map.Entry<Label, Block> subroutine : subrutineBlocks.entrySet()) {
+      Integer start = labels.get(subroutine.getKey());
+      if (start != null) {
+        subroutineStarts.put(start, subroutine.getValue());
+      }
+    }
+    blocks = new Block[leaders.cardinality() + blockEnds.cardinality() + 1];
+    blockOfOperation = new int[operations.size()];
     Block block = null;
     String prefix = "block_";
-    while (frame != null) {
-      if (frame.blockStartsHere) {
+    for (int index = 0; index < operations.size(); index++) {
+      if (leaders.get(index)) {
         block = null;
       }
-      Label frameLabel = frame.label;
-      if (subrutineBlocks.containsKey(frameLabel)) {
-        block = subrutineBlocks.get(frameLabel);
-      }
-      if (block == null) {
+      Block subBlock = subroutineStarts.get(index);
+      if (subBlock != null) {
+        block = subBlock;
+        addBlock(block);
+      } else if (block == null) {
         block = new Block(prefix + (counter++));
-      } else {
-        if (block.getId().startsWith("sub")) {
-          prefix = "sub_";
-        }
+        addBlock(block);
+      }
+      if (block.getId().startsWith("sub")) {
+        prefix = "sub_";
       }
-      frame.block = block;
-      StackOperation operation = frame.operation;
+      blockOfOperation[index] = blockCount - 1;
+      StackOperation operation = operations.get(index);
       if (operation instanceof RetSub) {
         prefix = "block_";
       }
-      frame.block.addOp(operation);
-      if (frame.blockEndsHere) {
+      block.addOp(operation);
+      if (blockEnds.get(index)) {
         block = null;
       }
-      frame = frame.next;
     }
+    int number = blockCount;
+    for (Block subBlock : subrutineBlocks.values()) {
+      if (subBlock.getIndex() < 0) {
+        subBlock.setIndex(number++);
+      }
+    }
+  }
+
+  private void addBlock(Block block) {
+    block.setIndex(blockCount);
+    blocks[blockCount++] = block;
   }
 
+  /**
+   * Finds the distinct successors of each block, and from them the predecessors. The
+   * blocks are then linked in the same order.
+   */
   private void linkBlocks() {
-    Frame previousFrame = firstFrame;
-    Frame thisFrame = previousFrame.next;
-    while (thisFrame != null) {
-      Block previousBlock = previousFrame.block;
-      Block thisBlock = thisFrame.block;
-      if (previousBlock != thisBlock && !previousFrame.terminal) {
-        previousBlock.addNextBlock(thisFrame.block);
+    int lastOperation = lastOperation();
+    successorOffsets = new int[blockCount + 1];
+    successors = new int[Math.max(blockCount, jumpTargets.size())];
+    int[] linkedFrom = new int[blockCount];
+    Arrays.fill(linkedFrom, -1);
+    int edgeCount = 0;
+    int jump = 0;
+    for (int index = 0; index < lastOperation; index++) {
+      int from = blockOfOperation[index];
+      int next = blockOfOperation[index + 1];
+      if (from != next && !terminal.get(index)) {
+        edgeCount = addSuccessor(from, next, linkedFrom, edgeCount);
       }
-      for (Label label : previousFrame.gotoLabels) {
-        previousBlock.addNextBlock(frames.get(label).block);
+      for (; jump < jumpTargets.size() && jumpSources[jump] == index; jump++) {
+        int to = blockOfOperation[labels.get(jumpTargets.get(jump))];
+        edgeCount = addSuccessor(from, to, linkedFrom, edgeCount);
+      }
+      successorOffsets[from + 1] = edgeCount;
+    }
+    successorOffsets[blockCount] = edgeCount;
+
+    predecessorOffsets = new int[blockCount + 1];
+    predecessors = new int[edgeCount];
+    for (int edge = 0; edge < edgeCount; edge++) {
+      predecessorOffsets[successors[edge] + 1]++;
+    }
+    for (int b = 0; b < blockCount; b++) {
+      predecessorOffsets[b + 1] += predecessorOffsets[b];
+    }
+    int[] filled = Arrays.copyOf(predecessorOffsets, blockCount);
+    for (int from = 0; from < blockCount; from++) {
+      for (int edge = successorOffsets[from]; edge < successorOffsets[from + 1]; edge++) {
+        predecessors[filled[successors[edge]]++] = from;
       }
-      previousFrame = thisFrame;
-      thisFrame = thisFrame.next;
+    }
+
+    for (int b = 0; b < blockCount; b++) {
+      blocks[b].setLinks(blocksOf(successors, successorOffsets[b], successorOffsets[b + 1]),
+          blocksOf(predecessors, predecessorOffsets[b], predecessorOffsets[b + 1]));
+    }
+  }
+
+  private int addSuccessor(int from, int to, int[] linkedFrom, int edgeCount) {
+    if (from == to || linkedFrom[to] == from) {
+      return edgeCount;
+    }
+    linkedFrom[to] = from;
+    if (edgeCount == successors.length) {
+      successors = Arrays.copyOf(successors, edgeCount * 2);
+    }
+    successors[edgeCount] = to;
+    return edgeCount + 1;
+  }
+
+  private List<Block> blocksOf(int[] indexes, int from, int to) {
+    List<Block> list = new ArrayList<Block>(to - from);
+    for (int i = from; i < to; i++) {
+      list.add(blocks[indexes[i]]);
+    }
+    return list;
+  }
+
+  private void linkExceptionHandlers() {
+    for (int handler = 0; handler < handlerLabels.size(); handler++) {
+      Block handlerBlock = getBlock(handlerLabels.get(handler));
+      String eType = handlerTypes.get(handler);
+      Type type = eType == null ? JavaType.fromClass(Throwable.class) : JavaType.fromJava(eType);
+      handlerBlock.setExceptionHandler(-1, new Constant("?", type));
+      exceptionHandlerBlocks.add(handlerBlock);
     }
   }
 
   public List<Operation> getOperations() {
+    Block mainBlock = getMainBlock();
     if (mainBlock == null) {
       return Collections.emptyList();
     }
@@ -276,33 +328,35 @@ public class BlockDecomposer {
   }
 
   public Block getBlock(Label label) {
-    return frames.get(label).block;
+    return blocks[blockOfOperation[labels.get(label)]];
   }
 
   public Block getMainBlock() {
-    return mainBlock;
+    return blockCount == 0 ? null : blocks[0];
   }
 
   @Override
   public String toString() {
-    StringBuilder buf = new StringBuilder();
-    Frame frame = firstFrame;
-    while (frame != null) {
-      buf.append(frame);
-      buf.append("\n");
-      frame = frame.next;
+    Label[] labelOfOperation = new Label[operations.size()];
+    for (Map.Entry<Label, Integer> label : labels.entrySet()) {
+      labelOfOperation[label.getValue()] = label.getKey();
     }
-    if (mainBlock != null) {
-      frame = firstFrame;
-      List<Block> processed = new ArrayList<Block>();
-      while (frame!= null) {
-        Block block = frame.block;
-        if (!processed.contains(block)) {
-          buf.append(block);
-          processed.add(block);
+    StringBuilder buf = new StringBuilder();
+    for (int index = 0; index < operations.size(); index++) {
+      List<Label> gotoLabels = new ArrayList<Label>();
+      for (int jump = 0; jump < jumpTargets.size(); jump++) {
+        if (jumpSources[jump] == index) {
+          gotoLabels.add(jumpTargets.get(jump));
         }
-        frame = frame.next;
       }
+      buf.append(String.format("%-10s %-70s %-15s s=%-5b e=%-5b t=%-5b goto=%s",
+          labelOfOperation[index], operations.get(index),
+          blockCount == 0 ? null : blocks[blockOfOperation[index]].getId(),
+          leaders.get(index), blockEnds.get(index), terminal.get(index), gotoLabels));
+      buf.append("\n");
+    }
+    for (int b = 0; b < blockCount; b++) {
+      buf.append(blocks[b]);
     }
     return buf.toString();
   }
@@ -17,7 +17,10 @@ package com.google.test.metric.method;
 
 import static java.util.Arrays.asList;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -84,6 +87,7 @@ public class Stack2Turing {
 
   private final Block rootBlock;
   private final List<Operation> operations = new ArrayList<Operation>();
+  private final BitSet processed = new BitSet();
   private final ValueCompactor<Variable> pathCompactor = new VariableCompactor();
   public KeyedMultiStack<Block, Variable> stack = new KeyedMultiStack<Block, Variable>(
       pathCompactor);
@@ -93,42 +97,100 @@ public class Stack2Turing {
   }
 
   public List<Operation> translate() {
+    numberBlocks();
     stack.init(rootBlock);
-    translate(rootBlock, new ArrayList<Block>());
+    translate(rootBlock);
     return operations;
   }
 
-  private Block translate(Block block, List<Block> parentProcessed) {
-    List<Block> blocks = new ArrayList<Block>();
-    List<Block> processed = parentProcessed;
-    blocks.add(block);
+  /**
+   * The blocks of a {@link BlockDecomposer} are numbered already. Blocks put together by
+   * hand are numbered here, after the highest number in use, so that they can be kept in the
+   * processed bit set.
+   */
+  private void numberBlocks() {
+    if (rootBlock.getIndex() >= 0) {
+      return;
+    }
+    Set<Block> reached = new HashSet<Block>();
+    Deque<Block> blocks = new ArrayDeque<Block>();
+    List<Block> unnumbered = new ArrayList<Block>();
+    int number = 0;
+    reached.add(rootBlock);
+    blocks.add(rootBlock);
     while (!blocks.isEmpty()) {
-      block = blocks.remove(0);
-      processed.add(block);
+      Block block = blocks.poll();
+      if (block.getIndex() < 0) {
+        unnumbered.add(block);
+      } else {
+        number = Math.max(number, block.getIndex() + 1);
+      }
+      for (Block next : block.getNextBlocks()) {
+        if (reached.add(next)) {
+          blocks.add(next);
+        }
+      }
+      for (StackOperation operation : block.getOperations()) {
+        if (operation instanceof JSR && reached.add(((JSR) operation).getBlock())) {
+          blocks.add(((JSR) operation).getBlock());
+        }
+      }
+    }
+    for (Block block : unnumbered) {
+      block.setIndex(number++);
+    }
+  }
+
+  /**
+   * Translates the blocks reachable from {@code block} which are not processed yet, in
+   * breadth first order. {@code block} itself is always translated.
+   *
+   * @return the last block translated.
+   */
+  private Block translate(Block block) {
+    Deque<Block> blocks = new ArrayDeque<Block>();
+    Block lastBlock;
+    do {
+      lastBlock = block;
+      processed.set(block.getIndex());
       for (StackOperation operation : block.getOperations()) {
         translateStackOperation(block, operation);
         if (operation instanceof JSR) {
           JSR jsr = (JSR) operation;
           Block jsrBlock = jsr.getBlock();
           stack.split(block, asList(jsrBlock));
-          Block terminalBlock = translate(jsrBlock, processed);
+          Block terminalBlock = translate(jsrBlock);
           stack.join(asList(terminalBlock), block);
-          processed.add(jsrBlock);
+          processed.set(jsrBlock.getIndex());
+        }
+      }
+      List<Block> nextBlocks = new ArrayList<Block>();
+      for (Block next : block.getNextBlocks()) {
+        if (!processed.get(next.getIndex())) { // Don't visit already visited blocks
+          nextBlocks.add(next);
         }
       }
-      List<Block> nextBlocks = new ArrayList<Block>(block.getNextBlocks());
-      nextBlocks.removeAll(processed); // Don't visit already visited
-      // blocks
       if (nextBlocks.size() > 0) {
         stack.split(block, nextBlocks);
       }
       blocks.addAll(nextBlocks);
-      blocks.removeAll(processed);
-    }
+      block = pollUnprocessed(blocks);
+    } while (block != null);
     // It appears that when exceptions are involved a method might have
     // paths where stacks are not emptied. So we can't assert this.
     // Verdict is still out.
     // stack.assertEmpty();
+    return lastBlock;
+  }
+
+  /**
+   * A block can be queued more than once, it is translated where it was first queued.
+   */
+  private Block pollUnprocessed(Deque<Block> blocks) {
+    Block block = blocks.poll();
+    while (block != null && processed.get(block.getIndex())) {
+      block = blocks.poll();
+    }
     return block;
   }
 
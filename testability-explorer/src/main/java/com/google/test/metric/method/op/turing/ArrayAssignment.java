@@ -50,6 +50,18 @@ public class ArrayAssignment extends Operation {
     }
   }
 
+  public Variable getArray() {
+    return array;
+  }
+
+  public Variable getIndex() {
+    return index;
+  }
+
+  public Variable getValue() {
+    return value;
+  }
+
   @Override
   public String toString() {
     return array + "[" + index + "] <- " + value;
@@ -66,6 +66,10 @@ public class MethodInvocation extends Operation {
     return methodThis;
   }
 
+  public Variable getReturnVariable() {
+    return returnVariable;
+  }
+
   /**
    * @return true iff this is an invocation of methodName in a class className
    */
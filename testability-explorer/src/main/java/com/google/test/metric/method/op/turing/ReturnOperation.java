@@ -32,6 +32,10 @@ public class ReturnOperation extends Operation {
     visitor.setReturnValue(value);
   }
 
+  public Variable getValue() {
+    return value;
+  }
+
   @Override
   public String toString() {
     return "return " + value;
@@ -49,6 +49,7 @@ public class ClassReport extends SummaryGraphReport<ClassReport.MethodUnit> {
   }
 
   private final Source source;
+  private boolean truncated;
 
   public ClassReport(String name, Source source, GradeCategories grades, WeightedAverage average) {
     super(name, grades, average);
@@ -59,6 +60,17 @@ public class ClassReport extends SummaryGraphReport<ClassReport.MethodUnit> {
     return source;
   }
 
+  /**
+   * @return {@code true} if the analysis of one of the methods was cut off by its budget.
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  void setTruncated(boolean truncated) {
+    this.truncated = truncated;
+  }
+
   public void addMethod(String methodName, int lineNumber,
       int overallCost, Cost totalCost, Cost directCost) {
     addUnit(new MethodUnit(methodName, lineNumber, totalCost, directCost, overallCost));
@@ -23,7 +23,8 @@ import com.google.test.metric.ClassCost;
 import com.google.test.metric.CostModel;
 
 /**
- * Write out the classes and their metrics in a Java properties file format.
+ * Write out the classes and their metrics in a Java properties file format. A class whose
+ * costs were cut off by an analysis budget also has a {@code <class>.truncated=true} entry.
  * @author alexeagle@google.com (Alex Eagle)
  *
  */
@@ -43,6 +44,9 @@ public class PropertiesReportGenerator implements ReportGenerator {
 
   public void addClassCost(ClassCost classCost) {
     properties.setProperty(classCost.getClassName(), String.valueOf(costModel.computeClass(classCost)));
+    if (classCost.isTruncated()) {
+      properties.setProperty(classCost.getClassName() + ".truncated", "true");
+    }
   }
 
   public void printFooter() {
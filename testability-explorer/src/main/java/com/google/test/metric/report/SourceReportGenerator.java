@@ -15,6 +15,8 @@
  */
 package com.google.test.metric.report;
 
+import static java.util.ResourceBundle.getBundle;
+
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -35,6 +37,8 @@ import com.google.test.metric.WeightedAverage;
 import com.google.test.metric.report.Source.Line;
 
 import freemarker.ext.beans.BeanModel;
+import freemarker.ext.beans.BeansWrapper;
+import freemarker.ext.beans.ResourceBundleModel;
 import freemarker.template.Configuration;
 import freemarker.template.DefaultObjectWrapper;
 import freemarker.template.SimpleNumber;
@@ -106,6 +110,8 @@ public class SourceReportGenerator implements ReportGenerator {
       cfg.setSharedVariable("currentTime", currentTime);
       cfg.setSharedVariable("computeOverallCost", new OverallCostMethod());
       cfg.setSharedVariable("printCost", new PrintCostMethod());
+      cfg.setSharedVariable("message", new ResourceBundleModel(getBundle("messages"),
+          (BeansWrapper) cfg.getObjectWrapper()));
     } catch (TemplateModelException e) {
       throw new RuntimeException(e);
     }
@@ -186,6 +192,7 @@ public class SourceReportGenerator implements ReportGenerator {
     ClassReport classReport = new ClassReport(classCost.getClassName(), source,
         grades, new WeightedAverage(
             CostModel.WEIGHT_TO_EMPHASIZE_EXPENSIVE_METHODS));
+    classReport.setTruncated(classCost.isTruncated());
     for (MethodCost method : classCost.getMethods()) {
       int overallCost = costModel.computeOverall(method.getTotalCost());
       classReport.addMethod(method.getMethodName(), method
@@ -48,6 +48,7 @@ public abstract class SummaryReportModel extends ReportModel {
   protected int excellentCount = 0;
   protected int goodCount = 0;
   protected int needsWorkCount = 0;
+  protected int truncatedCount = 0;
   protected int worstCost = 1;
   private final CostModel costModel;
 
@@ -69,6 +70,9 @@ public abstract class SummaryReportModel extends ReportModel {
     } else {
       needsWorkCount++;
     }
+    if (classCost.isTruncated()) {
+      truncatedCount++;
+    }
     costs.add(cost);
     worstOffenders.add(classCost);
     if (worstOffenders.size() > worstOffenderCount) {
@@ -78,6 +82,13 @@ public abstract class SummaryReportModel extends ReportModel {
     weightedAverage.addValue(cost);
   }
 
+  /**
+   * @return the number of classes whose costs were cut off by an analysis budget.
+   */
+  public int getTruncatedCount() {
+    return truncatedCount;
+  }
+
   public int getClassCount() {
     return costs.size();
   }
@@ -45,6 +45,9 @@ public class TextReportGenerator extends SummaryReportModel implements ReportGen
     PieGraph graph = new PieGraph(50, new CharMarker('.', '=', '@'));
     String chart = graph.render(excellentCount, goodCount, needsWorkCount);
     out.printf("             Breakdown: [%s]%n", chart);
+    if (truncatedCount > 0) {
+      out.printf(" Truncated classes (*): %5d%n", truncatedCount);
+    }
   }
 
   public void printDistribution(int rows, int width) {
@@ -74,7 +77,7 @@ public class TextReportGenerator extends SummaryReportModel implements ReportGen
     out.println("Highest Cost");
     out.println("============");
     for (ClassCost cost : worstOffenders) {
-      out.println(cost);
+      out.println(cost.isTruncated() ? cost + " *" : cost);
     }
   }
 
@@ -39,6 +39,7 @@ public class ClassIssues implements IssueHolder {
   private final Queue<Issue> issues;
   private final String className;
   private final Integer totalCost;
+  private boolean truncated;
   private static final float MIN_PERCENT_TO_DISPLAY = 0.01f;
   private static final int MAX_ISSUES_TO_DISPLAY_PER_CLASS = 20;
 
@@ -63,6 +64,18 @@ public class ClassIssues implements IssueHolder {
     return className;
   }
 
+  /**
+   * @return whether the costs of the class were cut off by an analysis budget, so the issues
+   *     may be incomplete.
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  void setTruncated(boolean truncated) {
+    this.truncated = truncated;
+  }
+
   Map<String, List<Issue>> bucketize(IssueType issueType) {
     List<Issue> mostImportantIssues = getMostImportantIssues();
     Map<String, List<Issue>> theseIssues = Maps.newHashMap();
@@ -71,6 +71,7 @@ public class IssuesReporter {
   }
 
   private void populateIssues(ClassCost classCost, ClassIssues classIssues) {
+    classIssues.setTruncated(classCost.isTruncated());
     for (MethodCost methodCost : classCost.getMethods()) {
       addIssuesInMethod(classIssues, methodCost, classCost);
     }
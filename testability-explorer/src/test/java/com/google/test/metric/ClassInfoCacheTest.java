@@ -0,0 +1,252 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.classpath.ClassPath;
+import com.google.classpath.ClassPathFactory;
+import com.google.test.metric.method.op.turing.FieldAssignment;
+import com.google.test.metric.method.op.turing.Operation;
+import com.google.test.metric.testing.MetricComputerBuilder;
+
+public class ClassInfoCacheTest extends AutoFieldClearTestCase {
+
+  private final ClassPath classPath = new ClassPathFactory().createFromJVM();
+  private File cacheDir;
+  private ClassInfoCache cache;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    cacheDir = File.createTempFile("classInfoCache", "");
+    cacheDir.delete();
+    cacheDir.mkdirs();
+    cache = new ClassInfoCache(cacheDir);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    delete(cacheDir);
+    super.tearDown();
+  }
+
+  static class Counter {
+    private static Counter instance = new Counter();
+    private int count;
+    private final int[] history = new int[10];
+    private Counter next;
+
+    public int increment(int by) {
+      count += by;
+      history[count % history.length] = by;
+      if (next != null) {
+        next.count = count;
+      }
+      return Math.max(count, by);
+    }
+
+    public static Counter getInstance() {
+      return instance;
+    }
+
+    public String describe() {
+      return "count: " + count + " " + next.describe();
+    }
+  }
+
+  public void testClassIsStoredOnceItsBodiesAreDecoded() throws Exception {
+    ClassInfo parsed = new JavaClassRepository(classPath, cache)
+        .getClass(Counter.class.getCanonicalName());
+    for (MethodInfo method : parsed.getMethods()) {
+      assertFalse(method.getName(), method.hasBody());
+    }
+    assertTrue(files(cacheDir).isEmpty());
+
+    parsed.getMethod("int increment(int)").getOperations();
+    assertEquals(1, files(cacheDir).size());
+  }
+
+  public void testCachedBodiesAreDecodedWhenNeeded() throws Exception {
+    String name = Counter.class.getCanonicalName();
+    parseAndDecode(name);
+
+    ClassInfo cached = new JavaClassRepository(classPath, cache).getClass(name);
+    MethodInfo increment = cached.getMethod("int increment(int)");
+    MethodInfo describe = cached.getMethod("java.lang.String describe()");
+    assertFalse(increment.hasBody());
+    assertFalse(describe.hasBody());
+    assertFalse(increment.getOperations().isEmpty());
+    assertTrue(increment.hasBody());
+    assertFalse(describe.hasBody());
+  }
+
+  public void testCachedClassIsTheSameAsParsedClass() throws Exception {
+    String name = Counter.class.getCanonicalName();
+    ClassInfo parsed = parseAndDecode(name);
+    assertTrue(cacheDir.list().length > 0);
+
+    JavaClassRepository cachedRepository = new JavaClassRepository(classPath, cache);
+    ClassInfo cached = cache.load(classBytes(Counter.class), cachedRepository);
+
+    assertNotNull(cached);
+    assertNotSame(parsed, cached);
+    assertEquals(describe(parsed), describe(cached));
+    assertEquals(parsed.getSuperClass().getName(), cached.getSuperClass().getName());
+  }
+
+  public void testCachedFieldsAreSharedBetweenClassAndOperations() throws Exception {
+    String name = Counter.class.getCanonicalName();
+    parseAndDecode(name);
+
+    ClassInfo cached = new JavaClassRepository(classPath, cache).getClass(name);
+    FieldInfo count = cached.getField("count");
+    List<FieldInfo> assigned = new ArrayList<FieldInfo>();
+    for (Operation operation : cached.getMethod("int increment(int)").getOperations()) {
+      if (operation instanceof FieldAssignment) {
+        assigned.add(((FieldAssignment) operation).getField());
+      }
+    }
+    assertEquals(2, assigned.size());
+    for (FieldInfo field : assigned) {
+      assertSame(count, field);
+    }
+  }
+
+  public void testCachedClassCostsTheSame() throws Exception {
+    String name = Counter.class.getCanonicalName();
+    ClassCost parsed = computerFor(new JavaClassRepository(classPath, cache)).compute(name);
+    ClassCost cached = computerFor(new JavaClassRepository(classPath, cache)).compute(name);
+
+    assertEquals(parsed.getMethods().size(), cached.getMethods().size());
+    for (MethodCost method : parsed.getMethods()) {
+      assertEquals(method.toCostsString(),
+          cached.getMethodCost(method.getMethodName()).toCostsString());
+    }
+  }
+
+  public void testCorruptEntryIsIgnored() throws Exception {
+    String name = Counter.class.getCanonicalName();
+    parseAndDecode(name);
+    for (File entry : files(cacheDir)) {
+      FileOutputStream out = new FileOutputStream(entry);
+      out.write(new byte[] {1, 2, 3});
+      out.close();
+    }
+
+    assertNull(cache.load(classBytes(Counter.class), new JavaClassRepository(classPath)));
+    ClassInfo parsed = new JavaClassRepository(classPath, cache).getClass(name);
+    assertNotNull(parsed.getMethod("int increment(int)"));
+  }
+
+  public void testChangedClassMissesTheCache() throws Exception {
+    parseAndDecode(Counter.class.getCanonicalName());
+    byte[] changed = classBytes(Counter.class);
+    changed[changed.length - 1]++;
+
+    assertNull(cache.load(changed, new JavaClassRepository(classPath)));
+  }
+
+  public void testEntryOfAnotherAnalyzerBuildIsNotRead() throws Exception {
+    String name = Counter.class.getCanonicalName();
+    new JavaClassRepository(classPath, new ClassInfoCache(cacheDir, "dev:1")).getClass(name)
+        .getMethod("int increment(int)").getOperations();
+    ClassInfoCache rebuilt = new ClassInfoCache(cacheDir, "dev:2");
+
+    assertNull(rebuilt.load(classBytes(Counter.class), new JavaClassRepository(classPath)));
+    assertNotNull(new ClassInfoCache(cacheDir, "dev:1")
+        .load(classBytes(Counter.class), new JavaClassRepository(classPath)));
+  }
+
+  public void testAnalyzerVersionIdentifiesTheBuild() throws Exception {
+    String version = ClassInfoCache.analyzerVersion();
+    assertTrue(version, version.startsWith("dev:"));
+    assertEquals(version, ClassInfoCache.analyzerVersion());
+  }
+
+  private ClassInfo parseAndDecode(String name) {
+    ClassInfo parsed = new JavaClassRepository(classPath, cache).getClass(name);
+    // Decodes the bodies of all the methods, which stores the class.
+    parsed.getMethod("int increment(int)").getOperations();
+    return parsed;
+  }
+
+  private MetricComputer computerFor(ClassRepository repository) {
+    return new MetricComputerBuilder().withClassRepository(repository)
+        .withWhitelist(new RegExpWhiteList("java.")).build();
+  }
+
+  private String describe(ClassInfo classInfo) {
+    StringBuilder description = new StringBuilder(classInfo.getName());
+    description.append(" ").append(classInfo.getFileName());
+    for (FieldInfo field : classInfo.getFields()) {
+      description.append("\n").append(field).append(field.isFinal()).append(field.isGlobal())
+          .append(field.isPrivate());
+    }
+    for (MethodInfo method : classInfo.getMethods()) {
+      description.append("\n").append(method.getName()).append(" ")
+          .append(method.getStartingLineNumber()).append(" ")
+          .append(method.getVisibility()).append(" ")
+          .append(method.canOverride()).append(" ")
+          .append(method.getMethodThis()).append(" ")
+          .append(method.getParameters()).append(" ")
+          .append(method.getLocalVariables()).append(" ")
+          .append(method.getLinesOfComplexity());
+      for (Operation operation : method.getOperations()) {
+        description.append("\n  ").append(operation.getLineNumber()).append(": ")
+            .append(operation);
+      }
+    }
+    return description.toString();
+  }
+
+  private byte[] classBytes(Class<?> clazz) throws IOException {
+    InputStream in = clazz.getResourceAsStream(
+        clazz.getName().substring(clazz.getName().lastIndexOf('.') + 1) + ".class");
+    try {
+      return ClassInfoCache.readFully(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  private List<File> files(File directory) {
+    List<File> files = new ArrayList<File>();
+    for (File file : directory.listFiles()) {
+      if (file.isDirectory()) {
+        files.addAll(files(file));
+      } else {
+        files.add(file);
+      }
+    }
+    return files;
+  }
+
+  private void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
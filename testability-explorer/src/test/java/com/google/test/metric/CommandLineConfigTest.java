@@ -20,6 +20,7 @@ import com.google.test.metric.ReportGeneratorProvider.ReportFormat;
 import org.kohsuke.args4j.CmdLineException;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.PrintStream;
 import java.util.Arrays;
 
@@ -88,6 +89,29 @@ public class CommandLineConfigTest extends AutoFieldClearTestCase {
     }
   }
   
+  public void testZeroThreadsThrowsException() throws Exception {
+    commandLineConfig.cp = "a";
+    commandLineConfig.threads = 0;
+    try {
+      commandLineConfig.validate();
+      fail("CmdLineException exception expected but did not get thrown");
+    } catch (CmdLineException expected) {
+      assertTrue(expected.getMessage().startsWith("'-threads' must be at least 1"));
+    }
+  }
+
+  public void testBodyMemoryWithCacheDirThrowsException() throws Exception {
+    commandLineConfig.cp = "a";
+    commandLineConfig.maxBodyMemory = 64;
+    commandLineConfig.cacheDir = new File("cache");
+    try {
+      commandLineConfig.validate();
+      fail("CmdLineException exception expected but did not get thrown");
+    } catch (CmdLineException expected) {
+      assertTrue(expected.getMessage().startsWith("'-maxBodyMemory' can not be combined"));
+    }
+  }
+
   public void testBuildTestabilityConfig() throws Exception {
     PrintStream errStream = new PrintStream(new ByteArrayOutputStream());
     commandLineConfig = new CommandLineConfig(null, errStream);
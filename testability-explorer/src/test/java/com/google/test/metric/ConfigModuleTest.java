@@ -17,6 +17,8 @@ package com.google.test.metric;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
@@ -114,6 +116,26 @@ public class ConfigModuleTest extends AutoFieldClearTestCase {
     assertEquals("Global", 1.0, commandLineConfig.globalMultiplier);
   }
 
+  public void testParseBudgets() throws Exception {
+    Injector injector = Guice.createInjector(new ConfigModule(new String[]{
+        "-maxMethodOperations", "100000", "-maxClassMillis", "5000", "com.google.TestClass"},
+        outStream, errStream));
+    CommandLineConfig commandLineConfig = injector.getInstance(CommandLineConfig.class);
+
+    assertEquals("", err.toString());
+    assertEquals(100000, commandLineConfig.maxMethodOperations);
+    assertEquals(0, commandLineConfig.maxMethodFrames);
+    assertEquals(5000, commandLineConfig.maxClassMillis);
+    assertNotNull(injector.getInstance(Key.get(AnalysisBudget.class, Names.named("methodBudget"))));
+    assertNotNull(injector.getInstance(Key.get(AnalysisBudget.class, Names.named("classBudget"))));
+  }
+
+  public void testNegativeBudgetIsAnError() throws Exception {
+    Guice.createInjector(new ConfigModule(new String[]{"-maxMethodFrames", "-1", "."},
+        outStream, errStream)).getInstance(CommandLineConfig.class);
+    assertTrue(err.toString().startsWith("'-maxMethodFrames' can not be negative, was -1."));
+  }
+
   public void testJarFileNoClasspath() throws Exception {
     Guice.createInjector(new ConfigModule(new String[] {"junit.runner", "-cp"},
         outStream, errStream)).getInstance(CommandLineConfig.class);
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_5;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+import com.google.classpath.DirectoryClassPath;
+
+/**
+ * Measures the time to compute the costs of a bean with many properties, whose methods all
+ * have the implicit costs of its constructor and of its many setters. Run it from the command
+ * line, with the number of properties as the argument:
+ * <pre>
+ * java com.google.test.metric.ImplicitCostBenchmark [properties]
+ * </pre>
+ * Each run computes the class once method by method, interpreting the implicit costs for every
+ * method, and once as a whole, which summarizes them for the class.
+ */
+public class ImplicitCostBenchmark {
+
+  private static final String BEAN = "com/google/test/metric/benchmark/Bean";
+
+  public static void main(String[] args) throws IOException {
+    int propertyCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    File root = File.createTempFile("bean", "");
+    root.delete();
+    File beanFile = new File(root, BEAN + ".class");
+    beanFile.getParentFile().mkdirs();
+    FileOutputStream out = new FileOutputStream(beanFile);
+    out.write(createBean(propertyCount));
+    out.close();
+    try {
+      JavaClassRepository repository = new JavaClassRepository(new DirectoryClassPath(root));
+      ClassInfo bean = repository.getClass(BEAN.replace('/', '.'));
+      PrintStream err = new PrintStream(new ByteArrayOutputStream());
+      for (int run = 0; run < 5; run++) {
+        long start = System.nanoTime();
+        MetricComputer computer = new MetricComputer(repository, err,
+            new RegExpWhiteList("java."), 1);
+        Cost methodByMethod = new Cost();
+        for (MethodInfo method : bean.getMethods()) {
+          methodByMethod.add(computer.compute(method).getTotalCost());
+        }
+        long methodTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        computer = new MetricComputer(repository, err, new RegExpWhiteList("java."), 1);
+        Cost wholeClass = new Cost();
+        for (MethodCost method : computer.compute(bean).getMethods()) {
+          wholeClass.add(method.getTotalCost());
+        }
+        long classTime = System.nanoTime() - start;
+        System.out.println("Properties: " + propertyCount
+            + ", method by method: " + methodTime / 1000000 + " ms (" + methodByMethod + ")"
+            + ", whole class: " + classTime / 1000000 + " ms (" + wholeClass + ")");
+      }
+    } finally {
+      beanFile.delete();
+      for (File dir = beanFile.getParentFile(); !dir.equals(root.getParentFile());
+          dir = dir.getParentFile()) {
+        dir.delete();
+      }
+    }
+  }
+
+  /**
+   * @return a bean with a constructor, and a getter and a setter for each property. The setters
+   *     ignore {@code null} values, and count the changes in a field of the bean.
+   */
+  private static byte[] createBean(int propertyCount) {
+    ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    writer.visit(V1_5, ACC_PUBLIC, BEAN, null, "java/lang/Object", null);
+    writer.visitField(ACC_PRIVATE, "changes", "I", null, null).visitEnd();
+    MethodVisitor constructor = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    constructor.visitCode();
+    constructor.visitVarInsn(ALOAD, 0);
+    constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+    constructor.visitInsn(RETURN);
+    constructor.visitMaxs(0, 0);
+    constructor.visitEnd();
+    for (int i = 0; i < propertyCount; i++) {
+      String field = "property" + i;
+      String property = "Property" + i;
+      writer.visitField(ACC_PRIVATE, field, "Ljava/lang/Object;", null, null).visitEnd();
+      MethodVisitor setter = writer.visitMethod(ACC_PUBLIC, "set" + property,
+          "(Ljava/lang/Object;)V", null, null);
+      setter.visitCode();
+      Label start = new Label();
+      Label end = new Label();
+      Label unchanged = new Label();
+      setter.visitLabel(start);
+      setter.visitVarInsn(ALOAD, 1);
+      setter.visitJumpInsn(IFNULL, unchanged);
+      setter.visitVarInsn(ALOAD, 0);
+      setter.visitVarInsn(ALOAD, 1);
+      setter.visitFieldInsn(PUTFIELD, BEAN, field, "Ljava/lang/Object;");
+      setter.visitVarInsn(ALOAD, 0);
+      setter.visitInsn(DUP);
+      setter.visitFieldInsn(GETFIELD, BEAN, "changes", "I");
+      setter.visitInsn(ICONST_1);
+      setter.visitInsn(IADD);
+      setter.visitFieldInsn(PUTFIELD, BEAN, "changes", "I");
+      setter.visitLabel(unchanged);
+      setter.visitInsn(RETURN);
+      setter.visitLabel(end);
+      setter.visitLocalVariable("this", "L" + BEAN + ";", null, start, end, 0);
+      setter.visitLocalVariable("value", "Ljava/lang/Object;", null, start, end, 1);
+      setter.visitMaxs(0, 0);
+      setter.visitEnd();
+      MethodVisitor getter = writer.visitMethod(ACC_PUBLIC, "get" + property,
+          "()Ljava/lang/Object;", null, null);
+      getter.visitCode();
+      getter.visitVarInsn(ALOAD, 0);
+      getter.visitFieldInsn(GETFIELD, BEAN, field, "Ljava/lang/Object;");
+      getter.visitInsn(ARETURN);
+      getter.visitMaxs(0, 0);
+      getter.visitEnd();
+    }
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+}
@@ -1,11 +1,28 @@
 package com.google.test.metric;
 
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.TestCase;
 
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
 import com.google.classpath.ClassPath;
 import com.google.classpath.ClassPathFactory;
+import com.google.classpath.DirectoryClassPath;
 
 /**
  * Tests for the JavaClassRepository
@@ -24,7 +41,10 @@ public class JavaClassRepositoryTest extends TestCase {
    * @throws Exception
    */
   public void testParseFinishes() throws Exception {
-    repository.getClass(DeeplyNestedIfStatements.class.getCanonicalName());
+    ClassInfo classInfo = repository.getClass(DeeplyNestedIfStatements.class.getCanonicalName());
+    for (MethodInfo method : classInfo.getMethods()) {
+      method.getOperations();
+    }
     assertTrue(true);
   }
 
@@ -65,4 +85,227 @@ public class JavaClassRepositoryTest extends TestCase {
     assertEquals(name, repository.getClass(name).getName());
   }
 
+  static class Parent {
+    Child child;
+
+    Object grandChild() {
+      return child.parent;
+    }
+  }
+
+  static class Child extends Parent {
+    Parent parent;
+  }
+
+  public void testConcurrentRequestsShareOneParse() throws Exception {
+    String name = Child.class.getCanonicalName();
+    List<Future<ClassInfo>> children = getClassConcurrently(repository, name, name, name, name);
+    ClassInfo parent = repository.getClass(Parent.class.getCanonicalName());
+    for (Future<ClassInfo> child : children) {
+      assertSame(children.get(0).get(), child.get());
+      assertSame(parent, child.get().getSuperClass());
+    }
+  }
+
+  public void testConcurrentRequestsForMissingClassAllFail() throws Exception {
+    String name = "com.example.DoesNotExist";
+    for (Future<ClassInfo> missing : getClassConcurrently(repository, name, name, name, name)) {
+      try {
+        missing.get();
+        fail();
+      } catch (ExecutionException e) {
+        ClassNotFoundException notFound = (ClassNotFoundException) e.getCause();
+        assertEquals(name, notFound.getClassName());
+      }
+    }
+  }
+
+  public void testConcurrentRequestsForClassesReferencingEachOtherDoNotDeadlock()
+      throws Exception {
+    String parentName = Parent.class.getCanonicalName();
+    String childName = Child.class.getCanonicalName();
+    for (int i = 0; i < 20; i++) {
+      JavaClassRepository repo = new JavaClassRepository(cp);
+      List<Future<ClassInfo>> classes = getClassConcurrently(repo, parentName, childName);
+      assertEquals(parentName, classes.get(0).get().getName());
+      assertEquals(parentName, classes.get(1).get().getSuperClass().getName());
+      assertNotNull(repo.getClass(parentName).getMethod("java.lang.Object grandChild()"));
+    }
+  }
+
+  public void testConcurrentRequestsForSuperClassCycleFailWithoutDeadlock() throws Exception {
+    final File root = File.createTempFile("classes", "");
+    assertTrue(root.delete());
+    writeClass(root, "com/example/A", "com/example/B");
+    writeClass(root, "com/example/B", "com/example/A");
+    try {
+      for (int i = 0; i < 20; i++) {
+        final CountDownLatch bothRead = new CountDownLatch(2);
+        // Both threads start loading their class before either resolves its super class,
+        // so that one of them finds the other waiting on it.
+        ClassPath classPath = new DirectoryClassPath(root) {
+          @Override
+          public byte[] getResourceBytes(String resource) {
+            bothRead.countDown();
+            try {
+              bothRead.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+            return super.getResourceBytes(resource);
+          }
+        };
+        JavaClassRepository repo = new JavaClassRepository(classPath);
+        for (Future<ClassInfo> clazz : getClassConcurrently(repo, "com.example.A",
+            "com.example.B")) {
+          try {
+            clazz.get();
+            fail();
+          } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), e.getCause() instanceof IllegalStateException);
+          }
+        }
+      }
+    } finally {
+      delete(root);
+    }
+  }
+
+  public void testThreadClosingAWaitCycleGetsThePartialClass() throws Exception {
+    File root = File.createTempFile("classes", "");
+    assertTrue(root.delete());
+    writeClass(root, "com/example/A", "java/lang/Object");
+    writeClass(root, "com/example/B", "com/example/A");
+    try {
+      final AtomicReference<Thread> loaderOfA = new AtomicReference<Thread>();
+      final CountDownLatch readingB = new CountDownLatch(1);
+      // B is read once A's loader waits for it, so B's loader closes the cycle when it asks
+      // for its super class A.
+      ClassPath classPath = new DirectoryClassPath(root) {
+        @Override
+        public byte[] getResourceBytes(String resource) {
+          if (resource.equals("com/example/B.class")) {
+            readingB.countDown();
+            awaitWaiting(loaderOfA);
+          }
+          return super.getResourceBytes(resource);
+        }
+      };
+      // A references B while it is loaded, as the owner of a field would.
+      final JavaClassRepository repo = new JavaClassRepository(classPath) {
+        @Override
+        public void addClass(ClassInfo classInfo) {
+          super.addClass(classInfo);
+          if (classInfo.getName().equals("com.example.A")) {
+            try {
+              readingB.await();
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+            loaderOfA.set(Thread.currentThread());
+            getClass("com.example.B");
+          }
+        }
+      };
+      List<Future<ClassInfo>> classes = getClassConcurrently(repo, "com.example.A",
+          "com.example.B");
+      assertSame(classes.get(0).get(), classes.get(1).get().getSuperClass());
+      assertSame(repo.getClass("com.example.A"), classes.get(1).get().getSuperClass());
+      assertSame(classes.get(1).get(), repo.getClass("com.example.B"));
+    } finally {
+      delete(root);
+    }
+  }
+
+  private static void awaitWaiting(AtomicReference<Thread> thread) {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < deadline
+        && (thread.get() == null || thread.get().getState() != Thread.State.WAITING)) {
+      Thread.yield();
+    }
+  }
+
+  private void writeClass(File root, String name, String superName) throws Exception {
+    ClassWriter writer = new ClassWriter(0);
+    writer.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, name, null, superName, new String[0]);
+    writer.visitEnd();
+    File file = new File(root, name + ".class");
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), writer.toByteArray());
+  }
+
+  private void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  public void testMissingClassIsNotSearchedForAgain() throws Exception {
+    File root = File.createTempFile("classes", "");
+    assertTrue(root.delete());
+    File late = new File(root, "com/example/Late.class");
+    try {
+      JavaClassRepository repo = new JavaClassRepository(new DirectoryClassPath(root));
+      try {
+        repo.getClass("com.example.Late");
+        fail();
+      } catch (ClassNotFoundException e) {
+        assertEquals("com.example.Late", e.getClassName());
+      }
+
+      assertTrue(late.getParentFile().mkdirs());
+      InputStream in = getClass().getResourceAsStream("JavaClassRepositoryTest$Parent.class");
+      Files.copy(in, late.toPath());
+      in.close();
+      try {
+        repo.getClass("com.example.Late");
+        fail();
+      } catch (ClassNotFoundException e) {
+        assertEquals("com.example.Late", e.getClassName());
+      }
+    } finally {
+      late.delete();
+      late.getParentFile().delete();
+      late.getParentFile().getParentFile().delete();
+      root.delete();
+    }
+  }
+
+  public void testWhitelistedClassesAreLoadedWithoutMethodBodies() throws Exception {
+    String parentName = Parent.class.getCanonicalName();
+    JavaClassRepository repo = new JavaClassRepository(cp, null, new RegExpWhiteList(parentName));
+    ClassInfo parent = repo.getClass(parentName);
+    MethodInfo grandChild = parent.getMethod("java.lang.Object grandChild()");
+    assertTrue(grandChild.getOperations().isEmpty());
+    assertNotNull(grandChild.getMethodThis());
+    assertNotNull(parent.getField("child"));
+
+    ClassInfo child = repo.getClass(Child.class.getCanonicalName());
+    assertSame(parent, child.getSuperClass());
+    assertFalse(child.getConstructorWithMostNonPrimitiveParameters().getOperations().isEmpty());
+  }
+
+  private List<Future<ClassInfo>> getClassConcurrently(final ClassRepository repo,
+      String... names) throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(names.length);
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<ClassInfo>> classes = new ArrayList<Future<ClassInfo>>();
+    for (final String name : names) {
+      classes.add(executor.submit(new Callable<ClassInfo>() {
+        public ClassInfo call() throws Exception {
+          start.await();
+          return repo.getClass(name);
+        }
+      }));
+    }
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    return classes;
+  }
+
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.google.classpath.ClassPathFactory;
+import com.google.test.metric.method.op.turing.Operation;
+
+public class MethodBodyBudgetTest extends TestCase {
+
+  static class Example {
+    private int count;
+
+    int increment(int by) {
+      int before = count;
+      count = before + by;
+      return before;
+    }
+
+    int decrement(int by) {
+      int before = count;
+      count = before - by;
+      return before;
+    }
+  }
+
+  private static class CountingRepository extends JavaClassRepository {
+    /** Reads of {@link Example}. */
+    int reads;
+
+    CountingRepository(MethodBodyBudget budget) {
+      super(new ClassPathFactory().createFromJVM(), null, null, budget);
+    }
+
+    @Override
+    public byte[] readClassBytes(String clazzName) {
+      if (clazzName.equals(Example.class.getCanonicalName())) {
+        reads++;
+      }
+      return super.readClassBytes(clazzName);
+    }
+  }
+
+  private final MethodBodyBudget budget = new MethodBodyBudget(1);
+  private final CountingRepository repository = new CountingRepository(budget);
+  private final ClassInfo example = repository.getClass(Example.class.getCanonicalName());
+
+  public void testLeastRecentlyUsedBodyIsEvicted() throws Exception {
+    MethodInfo increment = example.getMethod("int increment(int)");
+    MethodInfo decrement = example.getMethod("int decrement(int)");
+    List<Operation> operations = increment.getOperations();
+    increment.clearReferenced();
+
+    decrement.getOperations();
+
+    assertFalse(increment.hasBody());
+    assertTrue(decrement.hasBody());
+    assertNotSame(operations, increment.getOperations());
+  }
+
+  public void testBodyIsDecodedAgainWithTheSameVariables() throws Exception {
+    MethodInfo increment = example.getMethod("int increment(int)");
+    List<Operation> operations = increment.getOperations();
+    Variable methodThis = increment.getMethodThis();
+    ParameterInfo by = increment.getParameters().get(0);
+    List<LocalVariableInfo> locals = increment.getLocalVariables();
+    assertTrue(increment.evictBody() > 0);
+
+    List<Operation> decodedAgain = increment.getOperations();
+
+    assertEquals(operations.toString(), decodedAgain.toString());
+    assertSame(methodThis, increment.getMethodThis());
+    assertSame(by, increment.getParameters().get(0));
+    assertEquals(locals, increment.getLocalVariables());
+  }
+
+  public void testClassIsReadAgainToDecodeRatherThanKept() throws Exception {
+    MethodInfo increment = example.getMethod("int increment(int)");
+    increment.getOperations();
+    assertEquals(2, repository.reads);
+    increment.evictBody();
+
+    increment.getOperations();
+
+    assertEquals(3, repository.reads);
+  }
+
+  public void testClassIsReadOnceWithoutBudget() throws Exception {
+    CountingRepository unlimited = new CountingRepository(null);
+    ClassInfo clazz = unlimited.getClass(Example.class.getCanonicalName());
+    for (MethodInfo method : clazz.getMethods()) {
+      method.getOperations();
+    }
+    assertEquals(1, unlimited.reads);
+  }
+
+  public void testOnlyTheNewestBodyIsKeptWhenAllAreOverBudget() throws Exception {
+    for (MethodInfo method : example.getMethods()) {
+      method.getOperations();
+    }
+    int withBody = 0;
+    for (MethodInfo method : example.getMethods()) {
+      if (method.hasBody()) {
+        withBody++;
+      }
+    }
+    assertEquals(1, withBody);
+    assertTrue(budget.getEvictions() >= example.getMethods().size() - 1);
+    assertTrue(budget.getUsedBytes() > 0);
+  }
+
+  public void testSummariesTakeAtMostHalfOfTheBudget() throws Exception {
+    MethodBodyBudget budget = new MethodBodyBudget(1000);
+    MethodInfo method = new MethodInfo(example, "void summarized()", false, Visibility.PUBLIC,
+        false, false, null, budget);
+    MethodSummaries summaries = new MethodSummaries();
+    SummaryRecorder recorder = new SummaryRecorder(new VariableState(), summaries);
+    Set<MethodInfo> visited = new HashSet<MethodInfo>();
+    MethodSummaries.Summary summary = new MethodSummaries.Summary(new byte[0], new Object[0],
+        new Cost(), false, false, false);
+    long kept = 500 / summary.estimateSize();
+    for (byte signature = 0; signature <= kept; signature++) {
+      summaries.add(method, new byte[] {signature}, summary);
+    }
+
+    assertEquals(kept * summary.estimateSize(), budget.getSummaryBytes());
+    assertEquals(budget.getSummaryBytes(), budget.getUsedBytes());
+    assertNotNull(summaries.find(method, new byte[] {0}, recorder, visited));
+    assertNull(summaries.find(method, new byte[] {(byte) kept}, recorder, visited));
+  }
+
+  public void testMethodsWithoutDecoderAreNotEvicted() throws Exception {
+    MethodInfo method = new MethodInfo(example, "void eager()", 0, null,
+        new ArrayList<ParameterInfo>(), new ArrayList<LocalVariableInfo>(), Visibility.PUBLIC,
+        new ArrayList<Operation>(), false, false, new ArrayList<Integer>());
+    assertEquals(0, method.evictBody());
+    assertNotNull(method.getOperations());
+  }
+}
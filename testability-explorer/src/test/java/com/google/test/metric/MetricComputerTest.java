@@ -578,6 +578,131 @@ public class MetricComputerTest extends AutoFieldClearTestCase {
     assertEquals(0, cost.getImplicitViolationCosts().size());
   }
 
+  public static class SharesHelper {
+    private static int counter;
+
+    public boolean first() {
+      return helper();
+    }
+
+    public boolean second() {
+      return helper();
+    }
+
+    private static boolean helper() {
+      counter++;
+      return CostUtil.staticCost2();
+    }
+  }
+
+  public void testSummarizedCallsCostTheSameAsInterpretedCalls() throws Exception {
+    MethodCost first = computer.compute(SharesHelper.class, "boolean first()");
+    MethodSummaries summaries = computer.getDecoratedComputer().getMethodSummaries();
+    assertEquals(0, summaries.getHits());
+    MethodCost second = computer.compute(SharesHelper.class, "boolean second()");
+    assertEquals(1, summaries.getHits());
+    assertEquals(first.getTotalCost().toString(), second.getTotalCost().toString());
+    assertEquals(2, second.getTotalCost().getCyclomaticComplexityCost());
+    assertEquals(1, second.getTotalCost().getGlobalCost());
+  }
+
+  public static class Bean {
+    private static int instances;
+    private Object first;
+    private Object second;
+
+    public Bean() {
+      instances++;
+      setFirst(null);
+    }
+
+    public void setFirst(Object first) {
+      if (first != null) {
+        this.first = first;
+      }
+    }
+
+    public void setSecond(Object second) {
+      if (second != null) {
+        this.second = second;
+      }
+      setFirst(second);
+    }
+
+    public Object getFirst() {
+      return first;
+    }
+
+    public static int getInstances() {
+      return instances > 0 ? instances : 0;
+    }
+  }
+
+  public void testSummarizedImplicitCostsCostTheSameAsInterpretedImplicitCosts()
+      throws Exception {
+    RegExpWhiteList whitelist = new RegExpWhiteList("java.");
+    ClassInfo bean = repo.getClass(Bean.class.getCanonicalName());
+    ClassCost classCost = new MetricComputer(repo, null, whitelist, 2).compute(bean);
+    MetricComputer methodByMethod = new MetricComputer(repo, null, whitelist, 2);
+    for (MethodCost cost : classCost.getMethods()) {
+      MethodCost expected = methodByMethod.compute(bean.getMethod(cost.getMethodName()));
+      assertEquals(describe(expected, 2), describe(cost, 2));
+    }
+    assertEquals(5, classCost.getMethods().size());
+  }
+
+  private String describe(MethodCost cost, int depth) {
+    StringBuilder description = new StringBuilder(cost.toString());
+    for (ViolationCost violation : cost.getViolationCosts()) {
+      description.append("\n").append(violation).append(" ").append(violation.getCost());
+      if (depth > 0 && violation instanceof MethodInvocationCost) {
+        MethodCost called = ((MethodInvocationCost) violation).getMethodCost();
+        description.append("\n").append(describe(called, depth - 1).replace("\n", "\n  "));
+      }
+    }
+    return description.toString();
+  }
+
+  public void testMethodBudgetTruncatesTheCostOfTheMethod() throws Exception {
+    RegExpWhiteList whitelist = new RegExpWhiteList("java.");
+    MethodInfo setSecond = repo.getClass(Bean.class.getCanonicalName())
+        .getMethod("void setSecond(java.lang.Object)");
+    MethodCost complete = new MetricComputer(repo, null, whitelist, 2).compute(setSecond);
+    MethodCost truncated = new MetricComputer(repo, null, whitelist, 2,
+        new AnalysisBudget(1, 0, 0), AnalysisBudget.UNLIMITED).compute(setSecond);
+    assertFalse(complete.isTruncated());
+    assertTrue(truncated.isTruncated());
+    assertEquals(1, complete.getTotalCost().getGlobalCost());
+    assertEquals(0, truncated.getTotalCost().getGlobalCost());
+    assertTrue(truncated.toString().endsWith(" (truncated)"));
+  }
+
+  public void testClassBudgetTruncatesTheMethodsLeftButKeepsThem() throws Exception {
+    RegExpWhiteList whitelist = new RegExpWhiteList("java.");
+    ClassInfo bean = repo.getClass(Bean.class.getCanonicalName());
+    ClassCost classCost = new MetricComputer(repo, null, whitelist, 2,
+        AnalysisBudget.UNLIMITED, new AnalysisBudget(0, 1, 0)).compute(bean);
+    assertEquals(5, classCost.getMethods().size());
+    assertTrue(classCost.isTruncated());
+    boolean cutOff = false;
+    for (MethodCost cost : classCost.getMethods()) {
+      cutOff |= cost.isTruncated();
+      assertEquals(cost.getMethodName(), cutOff, cost.isTruncated());
+    }
+    assertFalse(new MetricComputer(repo, null, whitelist, 2).compute(bean).isTruncated());
+  }
+
+  public void testCallsCutOffByTheBudgetAreNotSummarized() throws Exception {
+    MetricComputer budgeted = new MetricComputer(repo, null, new RegExpWhiteList("java."), 1,
+        new AnalysisBudget(6, 0, 0), AnalysisBudget.UNLIMITED);
+    ClassInfo sharesHelper = repo.getClass(SharesHelper.class.getCanonicalName());
+    MethodCost first = budgeted.compute(sharesHelper.getMethod("boolean first()"));
+    MethodCost second = budgeted.compute(sharesHelper.getMethod("boolean second()"));
+    assertTrue(first.isTruncated());
+    assertTrue(second.isTruncated());
+    assertEquals(0, budgeted.getMethodSummaries().getHits());
+  }
+
   static class MyLabel extends JLabel {
     void doThing() {
     }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static java.util.Collections.EMPTY_LIST;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class SummaryRecorderTest extends TestCase {
+
+  @SuppressWarnings("unchecked")
+  private final ClassInfo classInfo = new ClassInfo("c.g.t.A", false, null, EMPTY_LIST, null);
+  private final MethodInfo method = new MethodInfo(classInfo, "void method()", 0, null, null,
+      null, null, null, false, false, Arrays.asList(0));
+  private final MethodInfo callee = new MethodInfo(classInfo, "void callee()", 0, null, null,
+      null, null, null, false, false, Arrays.asList(0));
+  private final FieldInfo field = new FieldInfo(classInfo, "field", JavaType.INT, false, false,
+      false);
+  private final MethodSummaries summaries = new MethodSummaries();
+  private final VariableState globals = new VariableState();
+  private final SummaryRecorder recorder = new SummaryRecorder(globals, summaries);
+  private final Set<MethodInfo> visited = new HashSet<MethodInfo>();
+  private final byte[] signature = new byte[1];
+
+  public void testLogIsSummarizedBeforeItsSummaryIsMeasured() throws Exception {
+    int start = recorder.startRecording();
+    for (int i = 0; i < SummaryRecorder.MAX_RECORDED_EVENTS; i++) {
+      recorder.isVisited(visited, callee);
+    }
+    recorder.finishRecording(start, method, signature, new Cost(), false, false, false);
+
+    MethodSummaries.Summary summary = summaries.find(method, signature, recorder, visited);
+    assertNotNull(summary);
+    assertEquals(1, summary.kinds.length);
+  }
+
+  public void testLogTooLongToSummarizeIsNotKept() throws Exception {
+    int start = recorder.startRecording();
+    for (int i = 0; i <= SummaryRecorder.MAX_RECORDED_EVENTS; i++) {
+      recorder.isVisited(visited, callee);
+    }
+    recorder.finishRecording(start, method, signature, new Cost(), false, false, false);
+
+    assertNull(summaries.find(method, signature, recorder, visited));
+  }
+
+  public void testNestedCallCountsByItsSummary() throws Exception {
+    int outer = recorder.startRecording();
+    int inner = recorder.startRecording();
+    for (int i = 0; i < SummaryRecorder.MAX_RECORDED_EVENTS; i++) {
+      recorder.isVisited(visited, callee);
+    }
+    recorder.finishRecording(inner, callee, signature, new Cost(), false, false, false);
+    for (int i = 1; i < SummaryRecorder.MAX_RECORDED_EVENTS; i++) {
+      recorder.isVisited(visited, method);
+    }
+    recorder.finishRecording(outer, method, signature, new Cost(), false, false, false);
+
+    // Twice as many events were logged, but the nested call left only one of its own.
+    MethodSummaries.Summary summary = summaries.find(method, signature, recorder, visited);
+    assertNotNull(summary);
+    assertEquals(2, summary.kinds.length);
+  }
+
+  public void testSummaryKeepsCopiesOfTheLocalFields() throws Exception {
+    LocalField instance = new LocalField(new LocalVariableInfo("a", JavaType.INT), field);
+    LocalField localField = new LocalField(instance, field);
+    int start = recorder.startRecording();
+    recorder.setGlobal(instance);
+    recorder.isGlobal(localField);
+    recorder.finishRecording(start, method, signature, new Cost(), false, false, false);
+
+    MethodSummaries.Summary summary = summaries.find(method, signature, recorder, visited);
+    assertNotNull(summary);
+    LocalField copy = (LocalField) summary.subjects[1];
+    assertNotSame(localField, copy);
+    assertSame(field, copy.getField());
+    assertSame(summary.subjects[0], copy.getInstance());
+    assertNull(((LocalField) summary.subjects[0]).getInstance());
+  }
+
+  public void testReplayDoesNotSetLocalFieldsGlobal() throws Exception {
+    LocalField localField = new LocalField(null, field);
+    int start = recorder.startRecording();
+    recorder.isGlobal(localField);
+    recorder.setGlobal(localField);
+    recorder.finishRecording(start, method, signature, new Cost(), false, false, false);
+    MethodSummaries.Summary summary = summaries.find(method, signature, recorder, visited);
+
+    recorder.replay(summary, visited, null);
+
+    assertFalse(globals.isGlobal((Variable) summary.subjects[1]));
+    assertSame(summary, summaries.find(method, signature, recorder, visited));
+  }
+}
@@ -7,6 +7,7 @@ import com.google.test.metric.report.TextReportGenerator;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -97,6 +98,58 @@ public class TestabilityRunnerTest extends AutoFieldClearTestCase {
     assertTrue(err.toString().startsWith("WARNING: can not analyze class "));
   }
 
+  public void testMissingClassesAreWarnedAboutOnceAndSummarized() throws Exception {
+    JavaTestabilityRunner runner = runnerFor(CLASSES_EXTERNAL_DEPS_NO_SUPERCLASSES);
+    runner.run();
+
+    String errStr = err.toString();
+    List<String> warned = new ArrayList<String>();
+    for (String line : errStr.split("\n")) {
+      if (line.startsWith("WARNING: class not found: ")) {
+        assertFalse(errStr, warned.contains(line));
+        warned.add(line);
+      }
+    }
+    assertFalse(errStr, warned.isEmpty());
+    assertTrue(errStr, errStr.contains(" classes were not found:"));
+  }
+
+  public void testParallelAnalysisProducesSameModelAsSerialAnalysis() throws Exception {
+    List<String> entries = Arrays.asList("com.google.test.metric.example");
+    String serial = describe(runnerFor(entries, 1).generateModel(null));
+    String parallel = describe(runnerFor(entries, 4).generateModel(null));
+    assertTrue(serial, serial.contains("StaticMethodCalled"));
+    assertEquals(serial, parallel);
+  }
+
+  public void testEvictingMethodBodiesProducesSameModel() throws Exception {
+    List<String> entries = Arrays.asList("com.google.test.metric.example");
+    String unbounded = describe(runnerFor(entries, 1).generateModel(null));
+    MethodBodyBudget budget = new MethodBodyBudget(1);
+    ClassPath classPath = new ClassPathFactory().createFromJVM();
+    ClassRepository classRepository = new JavaClassRepository(classPath, null, null, budget);
+    MetricComputer computer = new MetricComputer(classRepository, errStream, whiteList, 1);
+    String bounded = describe(new JavaTestabilityRunner(report, classPath, classRepository,
+        computer, entries, whiteList, errStream, 2).generateModel(null));
+    assertTrue(budget.getEvictions() > 0);
+    assertEquals(unbounded, bounded);
+  }
+
+  private String describe(AnalysisModel model) {
+    StringBuilder buf = new StringBuilder();
+    for (ClassCost classCost : model.getClassCosts()) {
+      buf.append(classCost).append(classCost.getMethods()).append("\n");
+    }
+    return buf.toString();
+  }
+
+  private JavaTestabilityRunner runnerFor(List<String> entries, int threads) {
+    ClassPath classPath = new ClassPathFactory().createFromJVM();
+    ClassRepository classRepository = new JavaClassRepository(classPath);
+    MetricComputer computer = new MetricComputer(classRepository, errStream, whiteList, 1);
+    return new JavaTestabilityRunner(report, classPath, classRepository, computer,
+        entries, whiteList, errStream, threads);
+  }
 
   private JavaTestabilityRunner runnerFor(String path) {
     ClassPath classPath = new ClassPathFactory().createFromPaths(path, "core/" + path);
@@ -20,12 +20,16 @@ import static java.util.Collections.EMPTY_LIST;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 import junit.framework.TestCase;
 
 import com.google.test.metric.TestabilityVisitor.CostRecordingFrame;
 import com.google.test.metric.TestabilityVisitor.ParentFrame;
+import com.google.test.metric.method.Constant;
+import com.google.test.metric.method.op.turing.MethodInvocation;
+import com.google.test.metric.method.op.turing.Operation;
 
 public class TestabilityVisitorTest extends TestCase {
 
@@ -234,5 +238,64 @@ public class TestabilityVisitorTest extends TestCase {
     assertEquals(1, frame.getLoDCount(clazz.getField("plus1")));
   }
 
+  /**
+   * @return a class whose methods {@code call0()} to {@code call<depth - 1>()} each call the
+   *     next one.
+   */
+  @SuppressWarnings("unchecked")
+  private ClassInfo callChain(int depth) {
+    ClassInfo chain = new ClassInfo("c.g.t.Chain", false, null, EMPTY_LIST, null);
+    for (int i = 0; i < depth; i++) {
+      List<Operation> operations = new ArrayList<Operation>();
+      if (i + 1 < depth) {
+        operations.add(new MethodInvocation(i, chain.getName(), "void call" + (i + 1) + "()",
+            null, new ArrayList<Variable>(), new Constant("?", JavaType.VOID)));
+      }
+      chain.addMethod(new MethodInfo(chain, "void call" + i + "()", i, null,
+          new ArrayList<ParameterInfo>(), new ArrayList<LocalVariableInfo>(), Visibility.PUBLIC,
+          operations, false, false, Arrays.asList(i)));
+    }
+    repo.addClass(chain);
+    return chain;
+  }
+
+  public void testDeepCallChainsDoNotOverflowTheStack() throws Exception {
+    int depth = 20000;
+    ClassInfo chain = callChain(depth);
+    MethodCost cost = visitor.createFrame(chain.getMethod("void call0()"), 1)
+        .applyMethodOperations();
+    assertEquals(depth, cost.getTotalCost().getCyclomaticComplexityCost());
+    MethodSummaries summaries = new MethodSummaries();
+    TestabilityVisitor summarizingVisitor = new TestabilityVisitor(repo, new VariableState(),
+        null, new MissingClasses(), summaries, new RegExpWhiteList());
+    cost = summarizingVisitor.createFrame(chain.getMethod("void call0()"), 1)
+        .applyMethodOperations();
+    assertEquals(depth, cost.getTotalCost().getCyclomaticComplexityCost());
+    // The calls deep in the chain are summarized, the ones above them log too much.
+    SummaryRecorder recorder = new SummaryRecorder(new VariableState(), summaries);
+    assertNotNull(summaries.find(chain.getMethod("void call" + (depth - 1000) + "()"),
+        new byte[1], recorder, new HashSet<MethodInfo>()));
+    assertNull(summaries.find(chain.getMethod("void call1()"), new byte[1], recorder,
+        new HashSet<MethodInfo>()));
+  }
+
+  public void testDeepImplicitCallChainsDoNotOverflowTheStack() throws Exception {
+    int depth = 20000;
+    ClassInfo chain = callChain(depth);
+    MethodInfo last = chain.getMethod("void call" + (depth - 1) + "()");
+    CostRecordingFrame frame = visitor.createFrame(last, 1);
+    frame.applyImplicitCost(chain.getMethod("void call0()"), Reason.IMPLICIT_STATIC_INIT);
+    MethodCost cost = frame.applyMethodOperations();
+    // The last method of the chain is the one computed, it is not called again.
+    assertEquals(depth, cost.getTotalCost().getCyclomaticComplexityCost());
+    TestabilityVisitor summarizingVisitor = new TestabilityVisitor(repo, new VariableState(),
+        null, new MissingClasses(), new MethodSummaries(), new RegExpWhiteList());
+    frame = summarizingVisitor.createFrame(last, 1);
+    frame.applyImplicitCost(chain.getMethod("void call0()"), Reason.IMPLICIT_STATIC_INIT,
+        new ImplicitCostSummaries());
+    cost = frame.applyMethodOperations();
+    assertEquals(depth, cost.getTotalCost().getCyclomaticComplexityCost());
+  }
+
 }
 
@@ -2,10 +2,17 @@
 
 package com.google.test.metric.asm;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
+import org.objectweb.asm.ClassReader;
+
 import com.google.test.metric.ClassInfo;
+import com.google.test.metric.ClassNotFoundException;
 import com.google.test.metric.JavaClassRepository;
+import com.google.test.metric.MethodInfo;
 
 /**
  * @author alexeagle@google.com (Alex Eagle)
@@ -25,4 +32,113 @@ public class ClassInfoBuilderVisitorTest extends TestCase {
     ClassInfo aClass = new JavaClassRepository().getClass(this.getClass().getName());
     assertEquals("com/google/test/metric/asm/ClassInfoBuilderVisitorTest.java", aClass.getFileName());
   }
+
+  static class Referenced {
+    static int value;
+  }
+
+  static class Referencing {
+    int read() {
+      return Referenced.value;
+    }
+
+    int readTwice() {
+      return 2 * Referenced.value;
+    }
+  }
+
+  static class Unloadable {
+    static int value;
+  }
+
+  static class PartlyUnloadable {
+    int loadable() {
+      return 1;
+    }
+
+    int unloadable() {
+      return Unloadable.value;
+    }
+  }
+
+  private static class RecordingRepository extends JavaClassRepository {
+    final List<String> requested = new ArrayList<String>();
+
+    @Override
+    public ClassInfo getClass(String name) {
+      requested.add(name);
+      return super.getClass(name);
+    }
+  }
+
+  public void testMethodBodiesAreDecodedOnFirstUse() throws Exception {
+    RecordingRepository repository = new RecordingRepository();
+    MethodInfo read = repository.getClass(Referencing.class.getCanonicalName())
+        .getMethod("int read()");
+    assertFalse(repository.requested.contains(Referenced.class.getCanonicalName()));
+    assertTrue(read.isInstance());
+
+    assertFalse(read.getOperations().isEmpty());
+    assertTrue(repository.requested.contains(Referenced.class.getCanonicalName()));
+  }
+
+  public void testLazyMethodBodiesAreTheSameAsEagerOnes() throws Exception {
+    ClassReader reader = new ClassReader(Referencing.class.getName());
+    ClassInfoBuilderVisitor eager = new ClassInfoBuilderVisitor(new JavaClassRepository());
+    reader.accept(eager, 0);
+    ClassInfoBuilderVisitor lazy =
+        new ClassInfoBuilderVisitor(new JavaClassRepository(), reader);
+    reader.accept(lazy, 0);
+
+    List<MethodInfo> eagerMethods =
+        new ArrayList<MethodInfo>(eager.getClassInfo().getMethods());
+    List<MethodInfo> lazyMethods = new ArrayList<MethodInfo>(lazy.getClassInfo().getMethods());
+    assertEquals(eagerMethods.size(), lazyMethods.size());
+    for (int i = 0; i < eagerMethods.size(); i++) {
+      MethodInfo expected = eagerMethods.get(i);
+      MethodInfo actual = lazyMethods.get(i);
+      assertEquals(expected.getName(), actual.getName());
+      assertEquals(expected.getStartingLineNumber(), actual.getStartingLineNumber());
+      assertEquals(expected.getParameters().toString(), actual.getParameters().toString());
+      assertEquals(expected.getLocalVariables().toString(),
+          actual.getLocalVariables().toString());
+      assertEquals(expected.getLinesOfComplexity(), actual.getLinesOfComplexity());
+      assertEquals(expected.getOperations().toString(), actual.getOperations().toString());
+      assertEquals(expected.canOverride(), actual.canOverride());
+    }
+  }
+
+  public void testFirstUseDecodesAllBodiesOfTheClassAtOnce() throws Exception {
+    ClassInfo referencing =
+        new JavaClassRepository().getClass(Referencing.class.getCanonicalName());
+    MethodInfo read = referencing.getMethod("int read()");
+    MethodInfo readTwice = referencing.getMethod("int readTwice()");
+    assertFalse(readTwice.hasBody());
+
+    read.getOperations();
+
+    assertTrue(readTwice.hasBody());
+    assertFalse(readTwice.getOperations().isEmpty());
+  }
+
+  public void testMethodIsDecodedWhenAnotherMethodOfItsClassCanNotBe() throws Exception {
+    JavaClassRepository repository = new JavaClassRepository() {
+      @Override
+      public ClassInfo getClass(String name) {
+        if (name.equals(Unloadable.class.getCanonicalName())) {
+          throw new ClassNotFoundException(name);
+        }
+        return super.getClass(name);
+      }
+    };
+    ClassInfo clazz = repository.getClass(PartlyUnloadable.class.getCanonicalName());
+
+    assertFalse(clazz.getMethod("int loadable()").getOperations().isEmpty());
+    try {
+      clazz.getMethod("int unloadable()").getOperations();
+      fail();
+    } catch (ClassNotFoundException e) {
+      assertEquals(Unloadable.class.getCanonicalName(), e.getClassName());
+    }
+  }
 }
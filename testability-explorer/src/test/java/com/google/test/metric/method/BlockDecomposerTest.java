@@ -212,6 +212,27 @@ public class BlockDecomposerTest extends TestCase {
     assertEquals(list(c1Block, defBlock), main.getNextBlocks());
   }
 
+  public void testSwitchWithRepeatedTargetsLinksEachBlockOnce() throws Exception {
+    BlockDecomposer decomposer = new BlockDecomposer();
+    Label c1Label = new Label();
+    Label defLabel = new Label();
+    decomposer.addOp(load(1));
+    decomposer.tableSwitch(defLabel, c1Label, c1Label, defLabel);
+    decomposer.label(c1Label);
+    decomposer.addOp(load(2));
+    decomposer.label(defLabel);
+    decomposer.addOp(load(3));
+    decomposer.decomposeIntoBlocks();
+
+    Block main = decomposer.getMainBlock();
+    Block c1Block = decomposer.getBlock(c1Label);
+    Block defBlock = decomposer.getBlock(defLabel);
+    assertEquals(list(c1Block, defBlock), main.getNextBlocks());
+    assertEquals(list(defBlock), c1Block.getNextBlocks());
+    assertTrue(defBlock.toString(),
+        defBlock.toString().startsWith("Block[block_2 <- block_0, block_1]"));
+  }
+
   public void testTryCatchReturn() throws Exception {
     /*
      * try {        | label:lTry
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.method;
+
+import org.objectweb.asm.Label;
+
+import com.google.test.metric.JavaType;
+import com.google.test.metric.Variable;
+import com.google.test.metric.method.op.stack.Load;
+import com.google.test.metric.method.op.stack.Return;
+import com.google.test.metric.method.op.stack.Store;
+
+/**
+ * Measures the time to decompose and translate a synthetic method with many blocks, such as
+ * generated parsers have. Run it from the command line, with the number of blocks as the
+ * argument:
+ * <pre>
+ * java com.google.test.metric.method.Stack2TuringBenchmark [blocks]
+ * </pre>
+ * Each block stores a constant and then jumps conditionally to another block, so the blocks
+ * form one large graph with both forward and backward jumps.
+ */
+public class Stack2TuringBenchmark {
+
+  public static void main(String[] args) {
+    int blockCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    for (int run = 0; run < 5; run++) {
+      long start = System.nanoTime();
+      BlockDecomposer decomposer = createMethod(blockCount);
+      decomposer.decomposeIntoBlocks();
+      int operations = decomposer.getOperations().size();
+      long time = System.nanoTime() - start;
+      System.out.println("Blocks: " + blockCount + ", operations: " + operations
+          + ", time: " + time / 1000000 + " ms");
+    }
+  }
+
+  private static BlockDecomposer createMethod(int blockCount) {
+    BlockDecomposer decomposer = new BlockDecomposer();
+    Variable variable = new Variable("a", JavaType.INT, false, false);
+    Label[] labels = new Label[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      labels[i] = new Label();
+    }
+    for (int i = 0; i < blockCount; i++) {
+      decomposer.label(labels[i]);
+      decomposer.addOp(new Load(i, new Constant(i, JavaType.INT)));
+      decomposer.addOp(new Store(i, variable));
+      decomposer.conditionalGoto(labels[(i * 7 + 3) % blockCount]);
+    }
+    decomposer.addOp(new Return(blockCount, JavaType.VOID));
+    return decomposer;
+  }
+}
@@ -15,7 +15,9 @@
  */
 package com.google.test.metric.report;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.util.Date;
 
 import junit.framework.TestCase;
@@ -56,6 +58,21 @@ public class ClassSourceReportTest extends TestCase {
     report.write("Class.html", classReport, new File(out, "Class.html"));
   }
 
+  public void testTruncatedClassIsExplained() throws Exception {
+    classCost.getMethods().get(0).markTruncated();
+    ClassReport classReport = report.createClassReport(classCost);
+    File file = new File(out, "Class.html");
+    report.write("Class.html", classReport, file);
+    StringBuilder html = new StringBuilder();
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      html.append(line).append('\n');
+    }
+    reader.close();
+    assertTrue(html.toString(), html.indexOf("<p class=\"truncated\">The analysis of this class "
+        + "was cut off by its budget") >= 0);
+  }
+
   public void testDumpPackageToHtmlFile() throws Exception {
     PackageReport packageReport = new PackageReport(Testability.class
         .getPackage().getName(), grades, new WeightedAverage());
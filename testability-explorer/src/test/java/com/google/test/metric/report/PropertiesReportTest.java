@@ -50,5 +50,18 @@ public class PropertiesReportTest extends TestCase {
     Properties props = new Properties();
     props.load(new ByteArrayInputStream(out.toByteArray()));
     assertEquals(1, Integer.parseInt(props.getProperty(CLASS_NAME)));
+    assertNull(props.getProperty(CLASS_NAME + ".truncated"));
+  }
+
+  public void testTruncatedClassIsMarked() throws Exception {
+    MethodCost methodCost = new MethodCost("", "doThing", 3, false, false, false);
+    methodCost.markTruncated();
+    report.addClassCost(new ClassCost(CLASS_NAME, Arrays.asList(methodCost)));
+    report.printFooter();
+
+    Properties props = new Properties();
+    props.load(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(0, Integer.parseInt(props.getProperty(CLASS_NAME)));
+    assertEquals("true", props.getProperty(CLASS_NAME + ".truncated"));
   }
 }
@@ -74,6 +74,29 @@ public class TextReportTest extends TestCase {
         "             Breakdown: [.........=================@@@@@@@@@@@@@@@@@@@@@@@@@]");
   }
 
+  public void testPrintTruncatedClasses() throws Exception {
+    TextReportGenerator report =
+        new TextReportGenerator(new PrintStream(out), costModel, 50, 100, 2);
+    ClassCost truncated = classCost("c.g.t.B", 70);
+    truncated.getMethods().get(0).markTruncated();
+    report.addClassCost(classCost("c.g.t.A", 1));
+    report.addClassCost(truncated);
+    report.printSummary();
+    report.printWorstOffenders(2);
+    assertOutput(
+        "      Analyzed classes:     2",
+        " Excellent classes (.):     1  50.0%",
+        "      Good classes (=):     1  50.0%",
+        "Needs work classes (@):     0   0.0%",
+        "             Breakdown: [.........................==========================]",
+        " Truncated classes (*):     1",
+        "",
+        "Highest Cost",
+        "============",
+        "c.g.t.B *",
+        "c.g.t.A");
+  }
+
   public void testPrintDistribution() throws Exception {
     report.addClassCost(classCost("c.g.t.A", 1));
     report.addClassCost(classCost("c.g.t.B", 10));
@@ -130,6 +130,20 @@ public class XMLReportTest extends TestCase {
     assertXMLEquals("<class class=\"className\" cost=\"1\">M1()M2()</class>");
   }
 
+  public void testPrintTruncatedClassAndMethodCost() throws Exception {
+    XMLReportGenerator report = new XMLReportGenerator(handler, costModel, 0, 0, 0) {
+      @Override
+      public void writeCost(ViolationCost violation) throws SAXException {
+      }
+    };
+    MethodCost m1 = new MethodCost("", "M1", 12, false, false, false);
+    m1.markTruncated();
+    report.writeCost(new ClassCost("className", asList(m1)));
+    assertXMLEquals("<class class=\"className\" cost=\"0\" truncated=\"true\">"
+        + "<method cyclomatic=\"0\" global=\"0\" line=\"12\" lod=\"0\" name=\"M1\" "
+        + "overall=\"0\" truncated=\"true\"/></class>");
+  }
+
   public void testWholeDocument() throws Exception {
     XMLReportGenerator report = new XMLReportGenerator(handler, costModel, 1, 2, 3) {
       @Override